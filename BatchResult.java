@@ -0,0 +1,106 @@
+public class BatchResult {
+    /* outcome of the run of one tape in a batch */
+    private int index; // position of the tape in the batch
+    private String tapePath;
+    private int finalState;
+    private boolean accepted;
+    private long steps;
+    private MachineRun.termination stop; // why the run stopped, null if it did not run
+    private String error; // message of the error which prevented the run, null if it ran
+
+    public BatchResult(int index, String tapePath, int finalState, boolean accepted, long steps,
+                       MachineRun.termination stop) {
+        this.index = index;
+        this.tapePath = tapePath;
+        this.finalState = finalState;
+        this.accepted = accepted;
+        this.steps = steps;
+        this.stop = stop;
+        this.error = null;
+    }
+
+    public BatchResult(int index, String tapePath, String error) {
+        this.index = index;
+        this.tapePath = tapePath;
+        this.finalState = -1;
+        this.accepted = false;
+        this.steps = 0;
+        this.stop = null;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public String getTapePath() {
+        return this.tapePath;
+    }
+
+    public int getFinalState() {
+        return this.finalState;
+    }
+
+    public boolean getAccepted() {
+        return this.accepted;
+    }
+
+    public long getSteps() {
+        return this.steps;
+    }
+
+    public MachineRun.termination getTermination() {
+        return this.stop;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    public static String csvHeader() {
+        return "index,tape,final_state,accepted,steps,termination,error";
+    }
+
+    public String toCsv() {
+        return this.index + "," + csvField(this.tapePath) + ","
+                + ((this.error == null) ? this.finalState + "," + this.accepted + "," + this.steps + "," + this.stop + ","
+                                        : ",,,," + csvField(this.error));
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"index\":" + this.index + ",\"tape\":" + jsonString(this.tapePath));
+        if (this.error == null) {
+            sb.append(",\"final_state\":" + this.finalState);
+            sb.append(",\"accepted\":" + this.accepted);
+            sb.append(",\"steps\":" + this.steps);
+            sb.append(",\"termination\":\"" + this.stop + "\"");
+        } else {
+            sb.append(",\"error\":" + jsonString(this.error));
+        }
+        return sb.append("}").toString();
+    }
+
+    private static String csvField(String value) {
+        // quote the field only if it contains a separator, a quote or a new line
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+            return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append("\"").toString();
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+public class BatchRunner {
+    /* run one compiled machine against many tapes on a fork-join pool
+       the machine is shared, every tape gets its own run (tape, head and state) taken from a pool */
+
+    private MachineRunPool runs;
+    private int parallelism; // number of tapes run at the same time
+    private RunLimits limits; // budgets of every run
+
+    public BatchRunner(CompiledMachine machine, int parallelism, RunLimits limits) {
+        this.runs = new MachineRunPool(machine, parallelism);
+        this.parallelism = parallelism;
+        this.limits = limits;
+    }
+
+    public static List<String> listTapes(String batchPath) throws IOException {
+        // a directory gives all its .tp files, any other file is read as a list of tape paths (one per line)
+        File batch = new File(batchPath);
+        List<String> tapes = new ArrayList<>();
+
+        if (batch.isDirectory()) {
+            File[] files = batch.listFiles((dir, name) -> name.endsWith(".tp"));
+            if (files != null) {
+                Arrays.sort(files);
+                for (File f : files) tapes.add(f.getPath());
+            }
+        } else {
+            for (String line : Files.readAllLines(Paths.get(batchPath))) {
+                line = line.trim();
+                if (!line.isEmpty()) tapes.add(line);
+            }
+        }
+        return tapes;
+    }
+
+    public BatchResult runTape(int index, String tapePath) {
+        // a tape which can't be loaded does not stop the batch, the error is reported in its result
+        MachineRun run = this.runs.acquire();
+        try {
+            run.loadTape(tapePath);
+            run.execute(this.limits);
+            return new BatchResult(index, tapePath, run.getFinalState(), run.getAccepted(), run.getSteps(),
+                                   run.getTermination());
+        } catch (Exception e) {
+            return new BatchResult(index, tapePath, e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            this.runs.release(run);
+        }
+    }
+
+    public void run(List<String> tapes, Consumer<BatchResult> onResult) throws InterruptedException {
+        // the results are given to onResult as soon as they are available (so not in the order of the tapes),
+        // it is called from the threads of the pool
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, tapes.size()).parallel()
+                                       .forEach(i -> onResult.accept(this.runTape(i, tapes.get(i))))).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void run(List<String> tapes, Writer out, boolean json) throws IOException, InterruptedException {
+        // stream the results to out, one line per tape, as JSON lines or CSV
+        if (!json) out.write(BatchResult.csvHeader() + "\n");
+
+        try {
+            this.run(tapes, result -> {
+                String line = (json ? result.toJson() : result.toCsv()) + "\n";
+                synchronized (out) {
+                    try {
+                        out.write(line);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,301 @@
+import java.util.Arrays;
+
+public class BlockEngine implements ExecutionEngine {
+    /* macro-step execution: the tape is cut in blocks of blockSize cells packed in a long, and the effect
+       of running the machine inside a block, from (state, entry position, block contents) until the head
+       leaves the block or the machine halts, is computed once and memoized
+       repeated patterns are then crossed in one lookup instead of one iteration per step
+       the step count, the final state and the tape are the same as with the table execution
+       an engine keeps its cache between runs of its machine, it must be used by one thread at a time */
+
+    private static final int MAX_BLOCK_SIZE = 8;
+    private static final int MAX_INNER_STEPS = 1 << 16; // steps inside one block before giving up on memoizing it
+    private static final int MAX_CACHED = 1 << 22; // number of memoized macro steps kept at most
+
+    private static final int EXIT_LEFT = -1, EXIT_RIGHT = 1, HALT = 0;
+
+    private CompiledMachine machine;
+    private int requestedBlockSize; // block size asked for, 0 to choose it from the symbols
+    private int blockSize; // number of cells in a block
+    private int bits; // bits used by a cell in a packed block
+    private long cellMask;
+
+    // memoized macro steps: (contents, state * blockSize + position) -> index of the result
+    private long[] keyContents;
+    private int[] keyStatePos;
+    private int[] slots; // open addressing table, index of the result + 1 (0 for an empty slot)
+    private int cached;
+
+    // results of the macro steps
+    private long[] resContents; // contents of the block when leaving it
+    private int[] resState; // state when leaving the block (or final state)
+    private int[] resExit; // EXIT_LEFT, EXIT_RIGHT or HALT
+    private int[] resPos; // position of the head in the block when halting
+    private int[] resSteps; // number of base steps of the macro step
+    private int[] resMin, resMax; // positions visited in the block
+
+    // blocks of the tape, block j >= 0 is stored at j and block j < 0 at -j-1
+    private long[] positives, negatives;
+
+    private int[] cells; // block being simulated, unpacked
+
+    public BlockEngine(CompiledMachine machine, int blockSize) {
+        this.machine = machine;
+        this.requestedBlockSize = blockSize;
+        this.blockSize = blockSize;
+        this.bits = 0;
+    }
+
+    public int getBlockSize() {
+        return this.blockSize;
+    }
+
+    public int getCacheSize() {
+        // number of memoized macro steps
+        return this.cached;
+    }
+
+    @Override
+    public void run(MachineRun run) {
+        Tape tape = run.getTape();
+        int state = run.getCurrentState(), index = run.getCurrentIndex();
+        int minCell = index, maxCell = index;
+        long steps = run.getCurrentSteps();
+
+        if (!this.setup(tape)) {
+            // the tape holds symbols which can't be packed, fall back on the table execution
+            run.runSteps(Long.MAX_VALUE);
+            return;
+        }
+
+        final int b = this.blockSize;
+        int block = Math.floorDiv(index, b), pos = Math.floorMod(index, b);
+        int r;
+        long contents;
+
+        while (true) {
+            contents = this.getBlock(block);
+            r = this.lookup(contents, state, pos);
+
+            if (r < 0) {
+                // no macro step for this block (the machine stays too long in it)
+                this.materialize(tape, minCell, maxCell);
+                run.moveTo(state, block * b + pos, steps);
+                run.runSteps(Long.MAX_VALUE);
+                return;
+            }
+
+            this.setBlock(block, this.resContents[r]);
+            steps += this.resSteps[r];
+            state = this.resState[r];
+            minCell = Math.min(minCell, block * b + this.resMin[r]);
+            maxCell = Math.max(maxCell, block * b + this.resMax[r]);
+
+            if (this.resExit[r] == HALT) {
+                pos = this.resPos[r];
+                break;
+            } else if (this.resExit[r] == EXIT_RIGHT) {
+                block++;
+                pos = 0;
+            } else {
+                block--;
+                pos = b - 1;
+            }
+        }
+
+        this.materialize(tape, minCell, maxCell);
+        run.moveTo(state, block * b + pos, steps);
+    }
+
+    private boolean setup(Tape tape) {
+        // choose the packing from the symbols the tape can hold, and load the tape in blocks
+        int maxSymbol = 1;
+
+        for (int key = 0; key < this.machine.write.length; key++)
+            if (this.machine.nextState[key] != CompiledMachine.UNDEFINED)
+                maxSymbol = Math.max(maxSymbol, this.machine.write[key]);
+        for (int i = -tape.getNegativesSize(); i < tape.getPositivesSize(); i++) {
+            if (tape.read(i) < 0) return false;
+            maxSymbol = Math.max(maxSymbol, tape.read(i));
+        }
+
+        int bits = 32 - Integer.numberOfLeadingZeros(maxSymbol);
+        if (bits != this.bits || this.slots == null) {
+            // the memoized steps depend on the packing, start a new cache
+            this.bits = bits;
+            this.cellMask = (1L << bits) - 1;
+            this.blockSize = this.requestedBlockSize;
+            if (this.blockSize <= 0 || this.blockSize * bits > 63)
+                this.blockSize = Math.max(1, Math.min(MAX_BLOCK_SIZE, 63 / bits));
+            this.cells = new int[this.blockSize];
+            this.clearCache(1 << 10);
+        }
+
+        this.positives = new long[16];
+        this.negatives = new long[16];
+        for (int i = -tape.getNegativesSize(); i < tape.getPositivesSize(); i++)
+            this.setCell(i, tape.read(i));
+        return true;
+    }
+
+    private void materialize(Tape tape, int minCell, int maxCell) {
+        // write the blocks back on the tape, over the loaded cells and all the visited ones
+        int positivesSize = Math.max(tape.getPositivesSize(), maxCell + 1);
+        int negativesSize = Math.max(tape.getNegativesSize(), -minCell);
+
+        tape.clear();
+        tape.extend(negativesSize, positivesSize);
+        for (int i = -negativesSize; i < positivesSize; i++)
+            tape.write(i, this.getCell(i));
+    }
+
+    private int lookup(long contents, int state, int pos) {
+        // index of the result of the macro step, computed if needed, -1 if it can't be computed
+        int statePos = state * this.blockSize + pos;
+        int mask = this.slots.length - 1;
+        int slot = hash(contents, statePos) & mask;
+
+        while (this.slots[slot] != 0) {
+            int r = this.slots[slot] - 1;
+            if (this.keyContents[r] == contents && this.keyStatePos[r] == statePos)
+                return r;
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.cached >= MAX_CACHED) {
+            // the cache is full, compute the step in a scratch entry
+            return this.simulate(contents, state, pos, this.cached) ? this.cached : -1;
+        }
+
+        int r = this.cached;
+        if (!this.simulate(contents, state, pos, r)) return -1;
+        this.keyContents[r] = contents;
+        this.keyStatePos[r] = statePos;
+        this.slots[slot] = r + 1;
+        this.cached++;
+        if (this.cached * 2 > this.slots.length && this.slots.length < MAX_CACHED * 2)
+            this.rehash(this.slots.length * 2);
+        return r;
+    }
+
+    private boolean simulate(long contents, int state, int pos, int r) {
+        // run the machine inside the block and store the result at r
+        final int statesNb = this.machine.statesNb;
+        final int[] nextState = this.machine.nextState;
+        final int[] write = this.machine.write;
+        final int[] move = this.machine.move;
+        final int size = nextState.length;
+        final int[] cells = this.cells;
+        int key, steps = 0, min = pos, max = pos, exit;
+
+        for (int k = 0; k < this.blockSize; k++)
+            cells[k] = (int) ((contents >>> (k * this.bits)) & this.cellMask);
+
+        while (true) {
+            key = statesNb * cells[pos] + state;
+            if (key < 0 || key >= size || nextState[key] == CompiledMachine.UNDEFINED) {
+                exit = HALT;
+                break;
+            }
+            if (steps == MAX_INNER_STEPS) return false;
+            state = nextState[key];
+            cells[pos] = write[key];
+            pos += move[key];
+            steps++;
+            if (pos < 0) {
+                exit = EXIT_LEFT;
+                break;
+            } else if (pos >= this.blockSize) {
+                exit = EXIT_RIGHT;
+                break;
+            }
+            min = Math.min(min, pos);
+            max = Math.max(max, pos);
+        }
+
+        this.ensureResults(r + 1);
+        contents = 0;
+        for (int k = 0; k < this.blockSize; k++)
+            contents |= ((long) cells[k]) << (k * this.bits);
+        this.resContents[r] = contents;
+        this.resState[r] = state;
+        this.resExit[r] = exit;
+        this.resPos[r] = pos;
+        this.resSteps[r] = steps;
+        this.resMin[r] = min;
+        this.resMax[r] = max;
+        return true;
+    }
+
+    private void clearCache(int capacity) {
+        this.slots = new int[capacity * 2];
+        this.keyContents = new long[capacity];
+        this.keyStatePos = new int[capacity];
+        this.resContents = new long[capacity];
+        this.resState = new int[capacity];
+        this.resExit = new int[capacity];
+        this.resPos = new int[capacity];
+        this.resSteps = new int[capacity];
+        this.resMin = new int[capacity];
+        this.resMax = new int[capacity];
+        this.cached = 0;
+    }
+
+    private void ensureResults(int size) {
+        if (size <= this.resContents.length) return;
+        int capacity = Math.max(size, this.resContents.length * 2);
+        this.keyContents = Arrays.copyOf(this.keyContents, capacity);
+        this.keyStatePos = Arrays.copyOf(this.keyStatePos, capacity);
+        this.resContents = Arrays.copyOf(this.resContents, capacity);
+        this.resState = Arrays.copyOf(this.resState, capacity);
+        this.resExit = Arrays.copyOf(this.resExit, capacity);
+        this.resPos = Arrays.copyOf(this.resPos, capacity);
+        this.resSteps = Arrays.copyOf(this.resSteps, capacity);
+        this.resMin = Arrays.copyOf(this.resMin, capacity);
+        this.resMax = Arrays.copyOf(this.resMax, capacity);
+    }
+
+    private void rehash(int capacity) {
+        int mask = capacity - 1, slot;
+        this.slots = new int[capacity];
+        for (int r = 0; r < this.cached; r++) {
+            slot = hash(this.keyContents[r], this.keyStatePos[r]) & mask;
+            while (this.slots[slot] != 0) slot = (slot + 1) & mask;
+            this.slots[slot] = r + 1;
+        }
+    }
+
+    private static int hash(long contents, int statePos) {
+        long h = (contents ^ (statePos * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 31));
+    }
+
+    private long getBlock(int block) {
+        if (block >= 0)
+            return (block < this.positives.length) ? this.positives[block] : 0;
+        return (-block - 1 < this.negatives.length) ? this.negatives[-block - 1] : 0;
+    }
+
+    private void setBlock(int block, long contents) {
+        if (block >= 0) {
+            if (block >= this.positives.length)
+                this.positives = Arrays.copyOf(this.positives, Math.max(block + 1, this.positives.length * 2));
+            this.positives[block] = contents;
+        } else {
+            if (-block - 1 >= this.negatives.length)
+                this.negatives = Arrays.copyOf(this.negatives, Math.max(-block, this.negatives.length * 2));
+            this.negatives[-block - 1] = contents;
+        }
+    }
+
+    private int getCell(int index) {
+        int shift = Math.floorMod(index, this.blockSize) * this.bits;
+        return (int) ((this.getBlock(Math.floorDiv(index, this.blockSize)) >>> shift) & this.cellMask);
+    }
+
+    private void setCell(int index, int value) {
+        int block = Math.floorDiv(index, this.blockSize);
+        int shift = Math.floorMod(index, this.blockSize) * this.bits;
+        this.setBlock(block, (this.getBlock(block) & ~(this.cellMask << shift)) | (((long) value) << shift));
+    }
+}
@@ -0,0 +1,385 @@
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BusyBeaverSearch {
+    /* exhaustive search of the machines with statesNb states and symbolsNb symbols (busy beaver)
+       the machines are enumerated in tree normal form: a candidate is a partial table, run from a blank tape
+       until it reads a (state, symbol) with no transition; it is a halting machine, and its children define
+       that transition in every possible way, so a transition is only chosen when a run needs it
+       - isomorphic machines are skipped: a transition only goes to a state already used or to the lowest
+         unused one, only writes a symbol already used or the lowest unused one, and the first transition
+         moves RIGHT (a machine moving LEFT first is its mirror)
+       - trivially non-halting children are skipped: defining the last missing transition (nothing can halt
+         anymore), and staying in the same state on a blank towards a blank end of the tape (it goes forever)
+       - every candidate runs under the step budget with the loop detection (see LoopDetector): a halting
+         candidate is expanded, a looping one is non-halting, one exceeding the budget is undecided
+       the tree is split into UNITS subtrees in a fixed order, searched a batch at a time on a fork-join pool
+       (work stealing between the subtrees); the checkpoint keeps the index of the next unit and the counters,
+       the order of the units does not depend on the number of threads so a search can be resumed with another one
+       the steps are the transitions applied, the emulator halts on a missing transition without counting it */
+
+    static final int UNITS = 1 << 14; // subtrees the search is split into (less if the tree is smaller)
+    static final int BATCH_PER_THREAD = 4; // units searched by every thread between two checkpoints
+    public static final long DEFAULT_STEPS = 100_000; // step budget of a candidate when none is given
+
+    private int statesNb, symbolsNb;
+    private long maxSteps;
+    private RunLimits limits;
+    private int parallelism;
+    private String checkpointPath; // file receiving the position of the search, empty for no checkpoint
+    private long checkpointEvery; // milliseconds between two checkpoints
+    private PrintStream out; // stream of the champions
+
+    private LongAdder halting, nonHalting, undecided;
+    private volatile long bestSteps; // steps of the best halting machine found so far, -1 before the first one
+    private String best; // best halting machine, in the compact notation (see notation)
+    private int nextUnit; // units before it are searched
+    private boolean resumed, quiet;
+    private ThreadLocal<MachineRun> runs;
+
+    private static final class Candidate {
+        /* partial table of a machine, indexed like CompiledMachine: symbolsNb tables of statesNb entries */
+        final int[] nextState, write, move;
+        final int defined; // number of transitions defined
+        final int maxState, maxSymbol; // highest state and symbol used
+
+        Candidate(int[] nextState, int[] write, int[] move, int defined, int maxState, int maxSymbol) {
+            this.nextState = nextState;
+            this.write = write;
+            this.move = move;
+            this.defined = defined;
+            this.maxState = maxState;
+            this.maxSymbol = maxSymbol;
+        }
+
+        Candidate with(int key, int next, int w, int m) {
+            int[] nextState = this.nextState.clone(), write = this.write.clone(), move = this.move.clone();
+            nextState[key] = next;
+            write[key] = w;
+            move[key] = m;
+            return new Candidate(nextState, write, move, this.defined + 1, Math.max(this.maxState, next),
+                                 Math.max(this.maxSymbol, w));
+        }
+    }
+
+    private final class Subtree extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Candidate candidate;
+
+        Subtree(Candidate candidate) {
+            this.candidate = candidate;
+        }
+
+        @Override
+        protected void compute() {
+            List<Subtree> children = new ArrayList<>();
+            for (Candidate child : BusyBeaverSearch.this.expand(this.candidate))
+                children.add(new Subtree(child));
+            invokeAll(children);
+        }
+    }
+
+    public BusyBeaverSearch(int statesNb, int symbolsNb, long maxSteps, int parallelism, PrintStream out) {
+        if (statesNb < 1 || statesNb > 26 || symbolsNb < 2 || symbolsNb > 10)
+            throw new IllegalArgumentException("The search needs 1 to 26 states and 2 to 10 symbols");
+
+        this.statesNb = statesNb;
+        this.symbolsNb = symbolsNb;
+        this.maxSteps = maxSteps;
+        this.limits = new RunLimits(maxSteps, Long.MAX_VALUE, 0, true);
+        this.parallelism = parallelism;
+        this.checkpointPath = "";
+        this.checkpointEvery = 0;
+        this.out = out;
+        this.halting = new LongAdder();
+        this.nonHalting = new LongAdder();
+        this.undecided = new LongAdder();
+        this.bestSteps = -1;
+        this.best = "";
+        this.nextUnit = 0;
+        this.resumed = false;
+        this.quiet = false;
+        this.runs = ThreadLocal.withInitial(() -> new MachineRun(this.machine(this.root())));
+    }
+
+    public long getHalting() {
+        return this.halting.sum();
+    }
+
+    public long getNonHalting() {
+        return this.nonHalting.sum();
+    }
+
+    public long getUndecided() {
+        return this.undecided.sum();
+    }
+
+    public long getBestSteps() {
+        return this.bestSteps;
+    }
+
+    public String getBest() {
+        return this.best;
+    }
+
+    public CompiledMachine getBestMachine() {
+        // the best machine as a machine of the emulator, null before the first halting machine
+        return this.best.isEmpty() ? null : this.machine(this.parse(this.best));
+    }
+
+    public void setCheckpoint(String checkpointPath, long everyMillis) {
+        this.checkpointPath = checkpointPath;
+        this.checkpointEvery = everyMillis;
+    }
+
+    public void resume(String checkpointPath) throws FileNotFoundException, InvalidCheckpointException {
+        // continue the search from the unit following the last batch saved
+        Properties saved = new Properties();
+
+        try (InputStream in = new FileInputStream(checkpointPath)) {
+            saved.load(in);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidCheckpointException("Can't read the search checkpoint " + checkpointPath + ": " + e.getMessage());
+        }
+
+        try {
+            if (Integer.parseInt(saved.getProperty("states")) != this.statesNb
+                || Integer.parseInt(saved.getProperty("symbols")) != this.symbolsNb
+                || Long.parseLong(saved.getProperty("max_steps")) != this.maxSteps)
+                throw new InvalidCheckpointException("The checkpoint " + checkpointPath + " is the one of another search ("
+                                                     + saved.getProperty("states") + " states, " + saved.getProperty("symbols")
+                                                     + " symbols, " + saved.getProperty("max_steps") + " steps)");
+            this.nextUnit = Integer.parseInt(saved.getProperty("next_unit"));
+            this.halting.add(Long.parseLong(saved.getProperty("halting")));
+            this.nonHalting.add(Long.parseLong(saved.getProperty("non_halting")));
+            this.undecided.add(Long.parseLong(saved.getProperty("undecided")));
+            this.bestSteps = Long.parseLong(saved.getProperty("best_steps"));
+            this.best = saved.getProperty("best", "");
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new InvalidCheckpointException("The search checkpoint " + checkpointPath + " is invalid");
+        }
+        this.resumed = true;
+    }
+
+    public void run() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        List<Candidate> units = this.split();
+        long lastCheckpoint = System.currentTimeMillis();
+
+        try {
+            while (this.nextUnit < units.size()) {
+                int end = Math.min(this.nextUnit + BATCH_PER_THREAD * this.parallelism, units.size());
+                List<Subtree> batch = new ArrayList<>();
+                for (Candidate unit : units.subList(this.nextUnit, end))
+                    batch.add(new Subtree(unit));
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(batch);
+                    }
+                });
+                this.nextUnit = end;
+
+                if (!this.checkpointPath.isEmpty() && System.currentTimeMillis() - lastCheckpoint >= this.checkpointEvery) {
+                    this.checkpoint();
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        if (!this.checkpointPath.isEmpty())
+            this.checkpoint();
+    }
+
+    private List<Candidate> split() {
+        // expand the tree breadth-first until it has UNITS subtrees, the order only depends on the machines
+        // a resumed search expands the same candidates again, the counters are the ones of the checkpoint
+        ArrayDeque<Candidate> queue = new ArrayDeque<>();
+        long halting = this.getHalting(), nonHalting = this.getNonHalting(), undecided = this.getUndecided();
+        long bestSteps = this.bestSteps;
+        String best = this.best;
+
+        this.quiet = this.resumed;
+        queue.add(this.root());
+        while (!queue.isEmpty() && queue.size() < UNITS)
+            queue.addAll(this.expand(queue.poll()));
+        this.quiet = false;
+
+        if (this.resumed) {
+            this.halting.reset();
+            this.halting.add(halting);
+            this.nonHalting.reset();
+            this.nonHalting.add(nonHalting);
+            this.undecided.reset();
+            this.undecided.add(undecided);
+            this.bestSteps = bestSteps;
+            this.best = best;
+        }
+        return new ArrayList<>(queue);
+    }
+
+    private Candidate root() {
+        // no transition: the machine halts at once
+        int size = this.statesNb * this.symbolsNb;
+        int[] nextState = new int[size];
+        Arrays.fill(nextState, CompiledMachine.UNDEFINED);
+        return new Candidate(nextState, new int[size], new int[size], 0, 0, 0);
+    }
+
+    private CompiledMachine machine(Candidate candidate) {
+        return new CompiledMachine(this.statesNb, candidate.nextState, candidate.write, candidate.move, new int[0], 0);
+    }
+
+    private List<Candidate> expand(Candidate candidate) {
+        // run the candidate, return its children if it halts
+        final int statesNb = this.statesNb;
+        MachineRun run = this.runs.get();
+        List<Candidate> children = new ArrayList<>();
+
+        run.reset(this.machine(candidate));
+        run.execute(this.limits);
+        try {
+            switch (run.getTermination()) {
+                case LOOP:
+                    this.nonHalting.increment();
+                    return children;
+                case STEP_LIMIT:
+                case CELL_LIMIT:
+                case TIME_LIMIT:
+                    this.undecided.increment();
+                    return children;
+                default:
+                    this.halting.increment();
+                    this.champion(candidate, run.getSteps(), run.getTape());
+            }
+        } catch (TuringMachineException e) {
+            throw new IllegalStateException(e); // the run is over
+        }
+
+        Tape tape = run.getTape();
+        int state = run.getCurrentState(), index = run.getCurrentIndex(), read = tape.read(index);
+        int key = statesNb * read + state;
+        for (int next = 0; next <= Math.min(statesNb - 1, candidate.maxState + 1); next++) {
+            for (int w = 0; w <= Math.min(this.symbolsNb - 1, candidate.maxSymbol + 1); w++) {
+                for (int m = (candidate.defined == 0) ? 1 : -1; m <= 1; m += 2) {
+                    if (candidate.defined == statesNb * this.symbolsNb - 1
+                        || (next == state && read == 0 && blankBeyond(tape, index, m))) {
+                        this.nonHalting.increment();
+                        continue;
+                    }
+                    children.add(candidate.with(key, next, w, m));
+                }
+            }
+        }
+        return children;
+    }
+
+    private static boolean blankBeyond(Tape tape, int index, int move) {
+        // true if every cell after the head in the direction of the move is blank
+        int end = (move > 0) ? tape.getPositivesSize() : -tape.getNegativesSize() - 1;
+        for (int i = index + move; i != end; i += move)
+            if (tape.peek(i) != 0)
+                return false;
+        return true;
+    }
+
+    private void champion(Candidate candidate, long steps, Tape tape) {
+        // a halting machine running longer than all the previous ones is printed at once
+        if (steps <= this.bestSteps)
+            return;
+
+        synchronized (this) {
+            if (steps <= this.bestSteps)
+                return;
+            this.bestSteps = steps;
+            this.best = this.notation(candidate);
+            if (this.quiet)
+                return;
+
+            long nonBlank = 0;
+            for (int i = -tape.getNegativesSize(); i < tape.getPositivesSize(); i++)
+                if (tape.peek(i) != 0) nonBlank++;
+            this.out.println("Champion: " + steps + " steps, " + nonBlank + " non-blank cells: " + this.best);
+            this.out.flush();
+        }
+    }
+
+    private String notation(Candidate candidate) {
+        // states separated by '_', for every symbol read: symbol written, move (R/L) and next state (A, B, ...),
+        // or "---" without transition (e.g. 1RB1LB_1LA--- for the 2 states busy beaver)
+        StringBuilder sb = new StringBuilder();
+        for (int state = 0; state < this.statesNb; state++) {
+            if (state > 0) sb.append('_');
+            for (int read = 0; read < this.symbolsNb; read++) {
+                int key = this.statesNb * read + state;
+                if (candidate.nextState[key] == CompiledMachine.UNDEFINED)
+                    sb.append("---");
+                else
+                    sb.append(candidate.write[key]).append((candidate.move[key] > 0) ? 'R' : 'L')
+                      .append((char) ('A' + candidate.nextState[key]));
+            }
+        }
+        return sb.toString();
+    }
+
+    private Candidate parse(String notation) {
+        // inverse of notation
+        Candidate candidate = this.root();
+        String[] states = notation.split("_");
+        for (int state = 0; state < states.length; state++) {
+            for (int read = 0; read < this.symbolsNb; read++) {
+                String t = states[state].substring(3 * read, 3 * read + 3);
+                if (t.equals("---")) continue;
+                candidate = candidate.with(this.statesNb * read + state, t.charAt(2) - 'A', t.charAt(0) - '0',
+                                           (t.charAt(1) == 'R') ? 1 : -1);
+            }
+        }
+        return candidate;
+    }
+
+    private void checkpoint() throws IOException {
+        // write the position in a temporary file then rename it, the previous checkpoint stays valid until then
+        Properties saved = new Properties();
+        Path target = Paths.get(this.checkpointPath).toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        saved.setProperty("states", String.valueOf(this.statesNb));
+        saved.setProperty("symbols", String.valueOf(this.symbolsNb));
+        saved.setProperty("max_steps", String.valueOf(this.maxSteps));
+        saved.setProperty("next_unit", String.valueOf(this.nextUnit));
+        saved.setProperty("halting", String.valueOf(this.getHalting()));
+        saved.setProperty("non_halting", String.valueOf(this.getNonHalting()));
+        saved.setProperty("undecided", String.valueOf(this.getUndecided()));
+        saved.setProperty("best_steps", String.valueOf(this.bestSteps));
+        saved.setProperty("best", this.best);
+        try {
+            try (OutputStream out = new FileOutputStream(tmp.toFile())) {
+                saved.store(out, "busy beaver search");
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class Checkpointer {
+    /* periodic snapshots of a run, used by MachineRun.execute(RunLimits, Checkpointer)
+       the checkpoint file is a log: a header, a full snapshot of the run, then incremental records holding
+       only the pages of cells written since the previous record
+       the pages written are not tracked by the running loop: a chunk of n steps only writes cells at most
+       n cells away from the position of the head at its start, so the pages around it are marked between chunks
+       the full snapshot is copied by the running thread when the execution starts, before the first step;
+       after that a checkpoint only copies the marked pages, and a background thread writes them (a checkpoint
+       is skipped while the previous one is being written); when the log gets larger than twice the tape the
+       background thread replays it and replaces it by a new full snapshot, the running thread is not paused
+       format (big-endian): header "TMCK", version, machine hash (long), then records:
+       "TMRC", kind (full or incremental), state, head, steps (long), negatives size, positives size,
+       number of pages, pages (first cell, number of cells, cells), "TMEN" */
+
+    public static final String EXTENSION = ".tmck";
+
+    private static final int MAGIC = 0x544D434B; // "TMCK"
+    private static final int VERSION = 1;
+    private static final int RECORD_MAGIC = 0x544D5243; // "TMRC"
+    private static final int END_MAGIC = 0x544D454E; // "TMEN"
+    private static final int FULL = 0, INCREMENTAL = 1;
+    private static final int PAGE_CELLS = 4096;
+
+    private Path path;
+    private long machineHash;
+    private long intervalNanos; // time between two checkpoints
+    private long nextCheckpoint; // System.nanoTime() of the next checkpoint
+
+    private BitSet positivePages, negativePages; // pages written since the last record (negative page k holds
+                                                 // the cells -k*PAGE_CELLS-1 to -(k+1)*PAGE_CELLS)
+    private volatile long logSize; // bytes in the checkpoint file
+
+    private ExecutorService writer;
+    private Future<?> pending; // record being written
+    private volatile int written; // number of records written
+
+    public Checkpointer(String path, long intervalMillis) {
+        this.path = Paths.get(path);
+        this.intervalNanos = intervalMillis * 1_000_000;
+        this.nextCheckpoint = System.nanoTime() + this.intervalNanos;
+        this.positivePages = new BitSet();
+        this.negativePages = new BitSet();
+        this.logSize = 0;
+        this.pending = null;
+        this.written = 0;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getWritten() {
+        return this.written;
+    }
+
+    void started(MachineRun run) {
+        // first record: the whole tape, copied before the first step
+        Tape tape = run.getTape();
+
+        this.positivePages.set(0, (tape.getPositivesSize() + PAGE_CELLS - 1) / PAGE_CELLS);
+        this.negativePages.set(0, (tape.getNegativesSize() + PAGE_CELLS - 1) / PAGE_CELLS);
+        this.save(run, true);
+    }
+
+    void marked(int startIndex, long stepsRun) {
+        // called by the running thread after every chunk, startIndex is the head position at its start
+        long from = startIndex - stepsRun, to = startIndex + stepsRun;
+        this.mark((int) Math.max(from, Integer.MIN_VALUE), (int) Math.min(to, Integer.MAX_VALUE));
+    }
+
+    void afterChunk(MachineRun run) {
+        // called by the running thread between two chunks, once the chunk is marked
+        if (System.nanoTime() - this.nextCheckpoint >= 0)
+            this.checkpoint(run);
+    }
+
+    void checkpoint(MachineRun run) {
+        // hand the pages written since the previous record to the writer, skipped if it is still writing
+        if (this.pending != null && !this.pending.isDone())
+            return;
+        this.save(run, false);
+    }
+
+    private void save(MachineRun run, boolean full) {
+        // copy the marked pages on the running thread, the writer appends them (or replaces the file if full)
+        this.rethrow();
+
+        Tape tape = run.getTape();
+        List<int[]> pages = pages(tape, this.positivePages, this.negativePages); // {first cell, cells...}
+
+        this.positivePages.clear();
+        this.negativePages.clear();
+        this.machineHash = run.getMachine().getContentHash();
+
+        final int state = run.getCurrentState(), index = run.getCurrentIndex();
+        final int negatives = tape.getNegativesSize(), positives = tape.getPositivesSize();
+        final long steps = run.getCurrentSteps();
+        this.pending = this.writer.submit(() -> {
+            this.write(full, state, index, steps, negatives, positives, pages);
+            if (this.logSize > 2L * 4 * ((long) negatives + positives) + (1 << 20))
+                this.compact();
+            return null;
+        });
+        this.nextCheckpoint = System.nanoTime() + this.intervalNanos;
+    }
+
+    void stopped(MachineRun run) {
+        // the run was stopped by a budget: wait for the record being written and save the last configuration
+        this.await();
+        this.checkpoint(run);
+    }
+
+    public void close() throws IOException {
+        // wait for the last record to be written
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the checkpoint");
+        }
+        this.rethrow();
+    }
+
+    public static void restore(String path, MachineRun run) throws IOException, InvalidCheckpointException {
+        // replay a checkpoint file on a run of the same machine, the last complete record gives the configuration
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new InvalidCheckpointException("Not a checkpoint file: " + path);
+            if (in.readLong() != run.getMachine().getContentHash())
+                throw new InvalidCheckpointException("The checkpoint " + path + " was taken on another machine");
+            Position position = replay(in, run.getTape());
+            if (position == null)
+                throw new InvalidCheckpointException("The checkpoint " + path + " holds no complete snapshot");
+            run.moveTo(position.state, position.index, position.steps);
+        } catch (EOFException e) {
+            throw new InvalidCheckpointException("The checkpoint " + path + " is truncated");
+        } finally {
+            in.close();
+        }
+    }
+
+    private void compact() throws IOException {
+        // runs on the writer thread: replay the log on a tape of its own and write it back as a full snapshot
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.path.toFile()), 1 << 16));
+        Tape tape = new Tape();
+        Position position;
+
+        try {
+            in.readInt(); // header written by this checkpointer
+            in.readInt();
+            in.readLong();
+            position = replay(in, tape);
+        } finally {
+            in.close();
+        }
+
+        BitSet positivePages = new BitSet(), negativePages = new BitSet();
+        positivePages.set(0, (tape.getPositivesSize() + PAGE_CELLS - 1) / PAGE_CELLS);
+        negativePages.set(0, (tape.getNegativesSize() + PAGE_CELLS - 1) / PAGE_CELLS);
+        this.write(true, position.state, position.index, position.steps, tape.getNegativesSize(), tape.getPositivesSize(),
+                   pages(tape, positivePages, negativePages));
+    }
+
+    private static class Position {
+        // configuration given by the last complete record of a log
+        private int state, index;
+        private long steps;
+
+        private Position(int state, int index, long steps) {
+            this.state = state;
+            this.index = index;
+            this.steps = steps;
+        }
+    }
+
+    private static Position replay(DataInputStream in, Tape tape) throws IOException {
+        // apply the complete records following the header to the tape, null when there is none
+        // a record interrupted while being written ends the log
+        Position position = null;
+
+        while (true) {
+            int state, index, negatives, positives, pagesNb;
+            long steps;
+            List<int[]> pages = new ArrayList<>();
+            try {
+                if (in.readInt() != RECORD_MAGIC) break;
+                in.readInt(); // kind, a full snapshot covers every cell so it is replayed the same way
+                state = in.readInt();
+                index = in.readInt();
+                steps = in.readLong();
+                negatives = in.readInt();
+                positives = in.readInt();
+                pagesNb = in.readInt();
+                for (int p = 0; p < pagesNb; p++) {
+                    int first = in.readInt(), count = in.readInt();
+                    int[] page = new int[count + 1];
+                    page[0] = first;
+                    for (int c = 1; c <= count; c++) page[c] = in.readInt();
+                    pages.add(page);
+                }
+                if (in.readInt() != END_MAGIC) break;
+            } catch (EOFException e) {
+                break; // record interrupted while being written
+            }
+
+            tape.extend(negatives, positives);
+            for (int[] page : pages)
+                tape.setCells(page[0], page, 1, page.length - 1);
+            position = new Position(state, index, steps);
+        }
+        return position;
+    }
+
+    private static List<int[]> pages(Tape tape, BitSet positivePages, BitSet negativePages) {
+        // copies of the existing cells of the pages set
+        List<int[]> pages = new ArrayList<>();
+
+        for (int p = positivePages.nextSetBit(0); p >= 0; p = positivePages.nextSetBit(p + 1)) {
+            int first = p * PAGE_CELLS, count = Math.min(PAGE_CELLS, tape.getPositivesSize() - first);
+            if (count > 0) pages.add(copy(tape, first, count));
+        }
+        for (int k = negativePages.nextSetBit(0); k >= 0; k = negativePages.nextSetBit(k + 1)) {
+            int end = Math.min((k + 1) * PAGE_CELLS, tape.getNegativesSize()), count = end - k * PAGE_CELLS;
+            if (count > 0) pages.add(copy(tape, -end, count));
+        }
+        return pages;
+    }
+
+    private void await() {
+        if (this.pending == null) return;
+        try {
+            this.pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // reported by rethrow
+        }
+    }
+
+    private void mark(int from, int to) {
+        // mark the pages holding the cells from `from` to `to`
+        if (to >= 0)
+            this.positivePages.set(Math.max(from, 0) / PAGE_CELLS, to / PAGE_CELLS + 1);
+        if (from < 0)
+            this.negativePages.set((-Math.min(to, -1) - 1) / PAGE_CELLS, (-from - 1) / PAGE_CELLS + 1);
+    }
+
+    private static int[] copy(Tape tape, int first, int count) {
+        int[] page = new int[count + 1];
+        page[0] = first;
+        tape.getCells(first, page, 1, count);
+        return page;
+    }
+
+    private void write(boolean full, int state, int index, long steps, int negatives, int positives, List<int[]> pages)
+            throws IOException {
+        // runs on the writer thread, a full snapshot replaces the file atomically, other records are appended
+        Path target = full ? this.path.resolveSibling(this.path.getFileName() + ".tmp") : this.path;
+        long size = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target.toFile(), !full), 1 << 16));
+        FileOutputStream file = null;
+
+        try {
+            if (full) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(this.machineHash);
+                size += 16;
+            }
+            out.writeInt(RECORD_MAGIC);
+            out.writeInt(full ? FULL : INCREMENTAL);
+            out.writeInt(state);
+            out.writeInt(index);
+            out.writeLong(steps);
+            out.writeInt(negatives);
+            out.writeInt(positives);
+            out.writeInt(pages.size());
+            size += 36;
+            for (int[] page : pages) {
+                out.writeInt(page[0]);
+                out.writeInt(page.length - 1);
+                for (int c = 1; c < page.length; c++) out.writeInt(page[c]);
+                size += 4L * (page.length + 1);
+            }
+            out.writeInt(END_MAGIC);
+            size += 4;
+            out.flush();
+        } finally {
+            out.close();
+        }
+
+        if (full) {
+            Files.move(target, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.logSize = size;
+        } else {
+            this.logSize += size;
+        }
+        this.written++;
+    }
+
+    private void rethrow() {
+        // report the error of the last record written
+        if (this.pending == null || !this.pending.isDone()) return;
+        try {
+            this.pending.get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't write the checkpoint " + this.path, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+public interface ChunkedEngine extends ExecutionEngine {
+    /* engine which can stop after a given number of steps, so it runs under the budgets of the RunLimits and
+       takes checkpoints like the table execution (see MachineRun.execute(RunLimits, Checkpointer, ChunkedEngine))
+       the loop detection is limited to the exact repeats checked between two chunks */
+
+    boolean runSteps(MachineRun run, long maxSteps); // apply at most maxSteps transitions, return true if the machine halted
+
+    default void stopped(MachineRun run) {
+        // called once the run is over, halted or stopped by a budget
+    }
+
+    @Override
+    default void run(MachineRun run) {
+        this.runSteps(run, Long.MAX_VALUE);
+        this.stopped(run);
+    }
+}
@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.io.File;
+import java.io.FileNotFoundException;
+
+public class CompiledMachine {
+    /* dense primitive transition tables built from the parsed transitions
+       a transition is stored at the key statesNb * read + state, like in the parsed map,
+       so the tables answer exactly the same lookups without boxing
+       the dense tables only cover the keys from 0 to max(DENSE_KEYS, DENSE_RATIO * transitions): the keys of
+       negative symbols and of symbols far above the others are kept in sorted sparse tables, searched when the
+       key is outside the dense tables (see sparseSlot), so a huge symbol does not allocate a huge table
+       the tables are never modified once built so a compiled machine can be shared between threads */
+
+    public static final int UNDEFINED = -1; // value of nextState when no transition is defined for a key
+    static final int DENSE_KEYS = 1 << 16; // keys always stored in the dense tables
+    static final int DENSE_RATIO = 8; // entries of the dense tables per transition at most, beyond DENSE_KEYS
+
+    final int statesNb; // number of state, used to compute the keys
+    final int[] nextState; // key -> next state of the machine (UNDEFINED if there is no transition)
+    final int[] write; // key -> value to write on the tape
+    final int[] move; // key -> +1 for RIGHT, -1 for LEFT, 0 for STAY
+    final int[] sparseKeys; // keys outside the dense tables, sorted
+    final int[] sparseNextState, sparseWrite, sparseMove; // transitions of the sparse keys, in the same order
+    private final boolean[] accepting; // state -> is the state accepting
+    private final int tapeOffset; // initial position of the reading head
+    private final long contentHash; // hash of everything above, identifies the machine
+
+    public CompiledMachine(int statesNb, ArrayList<Integer> statesAccepting,
+            HashMap<Integer, Triplet<Integer, Integer, TuringMachine.direction>> transitions, int tapeOffset) {
+        int size = 0, maxAccepting = -1, sparseNb = 0;
+        long denseKeys = Math.max(DENSE_KEYS, (long) DENSE_RATIO * transitions.size());
+
+        for (int key : transitions.keySet()) {
+            if (key >= 0 && key < denseKeys) size = Math.max(size, key + 1);
+            else sparseNb++;
+        }
+        for (int state : statesAccepting)
+            maxAccepting = Math.max(maxAccepting, state);
+
+        this.statesNb = statesNb;
+        this.nextState = new int[size];
+        this.write = new int[size];
+        this.move = new int[size];
+        this.sparseKeys = new int[sparseNb];
+        this.sparseNextState = new int[sparseNb];
+        this.sparseWrite = new int[sparseNb];
+        this.sparseMove = new int[sparseNb];
+        this.accepting = new boolean[maxAccepting + 1];
+        this.tapeOffset = tapeOffset;
+
+        for (int key = 0; key < size; key++)
+            this.nextState[key] = UNDEFINED;
+
+        sparseNb = 0;
+        for (int key : transitions.keySet())
+            if (key < 0 || key >= size)
+                this.sparseKeys[sparseNb++] = key;
+        Arrays.sort(this.sparseKeys);
+
+        for (Map.Entry<Integer, Triplet<Integer, Integer, TuringMachine.direction>> t : transitions.entrySet()) {
+            int key = t.getKey(), slot = key;
+            int[] nextState = this.nextState, write = this.write, move = this.move;
+            if (key < 0 || key >= size) {
+                slot = Arrays.binarySearch(this.sparseKeys, key);
+                nextState = this.sparseNextState;
+                write = this.sparseWrite;
+                move = this.sparseMove;
+            }
+            nextState[slot] = t.getValue().getFirst();
+            write[slot] = t.getValue().getSecond();
+            move[slot] = move(t.getValue().getThird());
+        }
+
+        for (int state : statesAccepting)
+            if (state >= 0)
+                this.accepting[state] = true;
+
+        this.contentHash = this.hash();
+    }
+
+    CompiledMachine(int statesNb, int[] nextState, int[] write, int[] move, int[] statesAccepting, int tapeOffset) {
+        // machine given by its dense tables only
+        this(statesNb, nextState, write, move, new int[0], new int[0], new int[0], new int[0], statesAccepting, tapeOffset);
+    }
+
+    CompiledMachine(int statesNb, int[] nextState, int[] write, int[] move, int[] sparseKeys, int[] sparseNextState,
+                    int[] sparseWrite, int[] sparseMove, int[] statesAccepting, int tapeOffset) {
+        // machine given by its tables, used by the binary format (see MachineIO), the sparse keys are sorted
+        int maxAccepting = -1;
+
+        for (int state : statesAccepting)
+            maxAccepting = Math.max(maxAccepting, state);
+
+        this.statesNb = statesNb;
+        this.nextState = nextState;
+        this.write = write;
+        this.move = move;
+        this.sparseKeys = sparseKeys;
+        this.sparseNextState = sparseNextState;
+        this.sparseWrite = sparseWrite;
+        this.sparseMove = sparseMove;
+        this.accepting = new boolean[maxAccepting + 1];
+        this.tapeOffset = tapeOffset;
+        for (int state : statesAccepting)
+            this.accepting[state] = true;
+
+        this.contentHash = this.hash();
+    }
+
+    public int getStatesNb() {
+        return this.statesNb;
+    }
+
+    public int getTapeOffset() {
+        return this.tapeOffset;
+    }
+
+    public long getContentHash() {
+        return this.contentHash;
+    }
+
+    static int move(TuringMachine.direction d) {
+        // offset of the head for a direction
+        return (d == TuringMachine.direction.RIGHT) ? 1 : (d == TuringMachine.direction.LEFT) ? -1 : 0;
+    }
+
+    int[] getAcceptingStates() {
+        int count = 0, i = 0;
+        for (boolean a : this.accepting) if (a) count++;
+        int[] states = new int[count];
+        for (int state = 0; state < this.accepting.length; state++)
+            if (this.accepting[state]) states[i++] = state;
+        return states;
+    }
+
+    public int key(int state, int read) {
+        // key of the transition for the (state, read) couple
+        return this.statesNb * read + state;
+    }
+
+    public boolean hasTransition(int key) {
+        return (key >= 0 && key < this.nextState.length && this.nextState[key] != UNDEFINED) || this.sparseSlot(key) >= 0;
+    }
+
+    public boolean hasSparseTransitions() {
+        return this.sparseKeys.length > 0;
+    }
+
+    int sparseSlot(int key) {
+        // index of the transition of the key in the sparse tables, -1 if the key has none there
+        return (this.sparseKeys.length == 0) ? -1 : Math.max(Arrays.binarySearch(this.sparseKeys, key), -1);
+    }
+
+    public boolean isAccepting(int state) {
+        return state >= 0 && state < this.accepting.length && this.accepting[state];
+    }
+
+    boolean sameProgram(CompiledMachine other) {
+        // same transitions, used to rule out a collision of the content hashes
+        return this.statesNb == other.statesNb && Arrays.equals(this.nextState, other.nextState)
+                && Arrays.equals(this.write, other.write) && Arrays.equals(this.move, other.move)
+                && Arrays.equals(this.sparseKeys, other.sparseKeys) && Arrays.equals(this.sparseNextState, other.sparseNextState)
+                && Arrays.equals(this.sparseWrite, other.sparseWrite) && Arrays.equals(this.sparseMove, other.sparseMove);
+    }
+
+    private long hash() {
+        // FNV-1a over the tables, two machines with the same hash behave the same way
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, this.statesNb);
+        h = mix(h, this.tapeOffset);
+        h = mix(h, this.nextState.length);
+        for (int key = 0; key < this.nextState.length; key++) {
+            h = mix(h, this.nextState[key]);
+            if (this.nextState[key] != UNDEFINED) {
+                h = mix(h, this.write[key]);
+                h = mix(h, this.move[key]);
+            }
+        }
+        for (int slot = 0; slot < this.sparseKeys.length; slot++) {
+            h = mix(h, this.sparseKeys[slot]);
+            h = mix(h, this.sparseNextState[slot]);
+            h = mix(h, this.sparseWrite[slot]);
+            h = mix(h, this.sparseMove[slot]);
+        }
+        h = mix(h, UNDEFINED); // separates the tables from the accepting states
+        for (int state = 0; state < this.accepting.length; state++)
+            if (this.accepting[state])
+                h = mix(h, state);
+        return h;
+    }
+
+    private static long mix(long h, int value) {
+        for (int k = 0; k < 4; k++) {
+            h ^= (value >>> (8 * k)) & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    public static CompiledMachine load(String configPath) throws FileNotFoundException, InvalidConfigFileException {
+        Scanner configReader = new Scanner(new File(configPath));
+        try {
+            return parse(configReader);
+        } finally {
+            configReader.close();
+        }
+    }
+
+    public static CompiledMachine parse(Scanner configReader) throws InvalidConfigFileException {
+        // parse a configuration file into a compiled machine, for a (state, read) couple given several times
+        // the last transition is kept
+        MachineConfig config = MachineConfig.parse(configReader);
+        if (config.getTapesNb() != 1)
+            throw new InvalidConfigFileException("The machine has " + config.getTapesNb() + " tapes, it is run by MultiTapeRun");
+        return new CompiledMachine(config.getStatesNb(), config.getStatesAccepting(), config.getTransitionMap(),
+                                   config.getTapeOffset());
+    }
+}
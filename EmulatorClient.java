@@ -0,0 +1,99 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+public class EmulatorClient {
+    /* thin client of an EmulatorServer: the machine and the tape are run by the server, which reads the
+       files itself, so the paths are sent absolute; the final tape is sent back and written by the client */
+
+    private static final String SEPARATOR = "\t";
+
+    private BufferedReader in;
+    private PrintWriter out;
+    private SocketChannel channel;
+
+    public EmulatorClient(String address) throws IOException {
+        this.channel = EmulatorServer.connect(address);
+        this.in = new BufferedReader(new InputStreamReader(Channels.newInputStream(this.channel), StandardCharsets.UTF_8));
+        this.out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(this.channel), StandardCharsets.UTF_8));
+    }
+
+    public int loadMachine(String configPath, boolean optimize) throws IOException, TuringMachineException {
+        return Integer.parseInt(this.request("MACHINE" + SEPARATOR + new File(configPath).getAbsolutePath()
+                                             + (optimize ? SEPARATOR + "optimize" : ""))[1]);
+    }
+
+    public String[] run(int machine, String tapePath, String dumpPath, TuringMachine.engine engine, int blockSize,
+                        RunLimits limits) throws IOException, TuringMachineException {
+        // result of the run: termination, final state and steps
+        StringBuilder sb = new StringBuilder("RUN" + SEPARATOR + machine);
+
+        if (!tapePath.isEmpty()) sb.append(SEPARATOR + "tape=" + new File(tapePath).getAbsolutePath());
+        if (!dumpPath.isEmpty()) sb.append(SEPARATOR + "dump");
+        sb.append(SEPARATOR + "engine=" + engine);
+        if (blockSize != 0) sb.append(SEPARATOR + "block-size=" + blockSize);
+        if (limits.getMaxSteps() != Long.MAX_VALUE) sb.append(SEPARATOR + "max-steps=" + limits.getMaxSteps());
+        if (limits.getMaxCells() != Long.MAX_VALUE) sb.append(SEPARATOR + "max-cells=" + limits.getMaxCells());
+        if (limits.getTimeoutMillis() > 0) sb.append(SEPARATOR + "timeout=" + limits.getTimeoutMillis());
+        if (limits.detectsLoops()) sb.append(SEPARATOR + "detect-loops");
+
+        String[] result = this.request(sb.toString());
+        if (!dumpPath.isEmpty())
+            this.saveTape(dumpPath, Integer.parseInt(result[4]));
+        return new String[] { result[1], result[2], result[3] };
+    }
+
+    private void saveTape(String dumpPath, int first) throws IOException, TuringMachineException {
+        // the line following the result holds the cells from the index first
+        String line = this.in.readLine();
+        Tape cells = new Tape(), tape = new Tape();
+
+        if (line == null)
+            throw new IOException("The server closed the connection");
+        try {
+            TapeIO.loadText(new ByteArrayInputStream(line.getBytes(StandardCharsets.US_ASCII)), cells);
+        } catch (InvalidTapeFileException e) {
+            throw new TuringMachineException("Invalid tape sent by the server: " + e.getMessage());
+        }
+
+        int[] values = new int[cells.getPositivesSize()];
+        cells.getCells(0, values, 0, values.length);
+        tape.extend(Math.max(-first, 0), Math.max(first + values.length, 0));
+        tape.setCells(first, values, 0, values.length);
+        try {
+            TapeIO.save(dumpPath, tape);
+        } catch (InvalidTapeFileException e) {
+            throw new TuringMachineException(e.getMessage());
+        }
+    }
+
+    public void stopServer() throws IOException, TuringMachineException {
+        this.request("STOP");
+    }
+
+    public void close() throws IOException {
+        this.out.println("QUIT");
+        this.out.flush();
+        this.channel.close();
+    }
+
+    private String[] request(String request) throws IOException, TuringMachineException {
+        String response;
+
+        this.out.println(request);
+        this.out.flush();
+        response = this.in.readLine();
+        if (response == null)
+            throw new IOException("The server closed the connection");
+        if (response.startsWith("ERROR"))
+            throw new TuringMachineException(response.substring(Math.min(response.length(), 6)));
+        return response.split(SEPARATOR);
+    }
+}
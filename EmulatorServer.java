@@ -0,0 +1,289 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+public class EmulatorServer {
+    /* resident emulator: the machines stay loaded and the engines stay warm between the runs, so a run only
+       costs its own steps instead of the start of a JVM
+       the server listens on a loopback port or on a Unix domain socket (see address), every connection is
+       served by its own thread and at most maxRuns runs execute at once (from the loading of their tape to
+       the sending of their final tape)
+       every run gets the budgets of the server (limits), a request can only lower them: a run which never
+       halts is stopped by the time budget instead of keeping its permit
+       the last MAX_MACHINES machines used stay loaded, the others are dropped and get a new id when loaded again
+       protocol: one request per line, one response per line, the fields are separated by tabs
+         MACHINE <path> [optimize]           -> OK <machine id>          load the machine (kept until its file changes)
+         RUN <machine id> [<key>=<value>...] -> RESULT <termination> <final state> <steps> [<first cell>]
+              keys: tape (path on the server), dump, engine, block-size, max-steps, max-cells, timeout, detect-loops
+              every run has budgets: the block and rle engines, which can't be stopped, are refused
+              with dump the index of the first cell ends the response, which is followed by a line holding
+              the final tape in the text format (see TapeIO): the server never writes a file for a client
+         QUIT                                -> closes the connection
+         STOP                                -> OK, then the server stops
+       a request which fails gets ERROR <message> */
+
+    public static final RunLimits DEFAULT_LIMITS = new RunLimits(Long.MAX_VALUE, 1L << 27, 60_000, false); // 512 MB of cells, 1 min
+
+    private static final String SEPARATOR = "\t";
+    private static final int MAX_MACHINES = 64;
+
+    private SocketAddress address;
+    private Semaphore runs; // permits of the runs executing at once
+    private String cacheDirectory; // cache of the compiled machines, see MachineIO
+    private RunLimits limits; // budgets of every run
+
+    private LinkedHashMap<String, LoadedMachine> byPath; // path + options -> machine loaded from it, least recently used first
+    private Map<Integer, LoadedMachine> byId; // machine id -> machine, the machines of byPath only
+    private int nextId;
+    private volatile boolean stopped;
+    private ServerSocketChannel server;
+
+    private static class LoadedMachine {
+        // a machine and the state of its file when it was loaded
+        private int id;
+        private String key;
+        private CompiledMachine machine;
+        private long lastModified, length;
+
+        private LoadedMachine(int id, String key, CompiledMachine machine, long lastModified, long length) {
+            this.id = id;
+            this.key = key;
+            this.machine = machine;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    public EmulatorServer(String address, int maxRuns, String cacheDirectory, RunLimits limits) {
+        this.address = address(address);
+        this.runs = new Semaphore(maxRuns);
+        this.cacheDirectory = cacheDirectory;
+        this.limits = limits;
+        this.byId = new HashMap<>();
+        this.byPath = new LinkedHashMap<String, LoadedMachine>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LoadedMachine> eldest) {
+                if (this.size() <= MAX_MACHINES)
+                    return false;
+                EmulatorServer.this.byId.remove(eldest.getValue().id);
+                return true;
+            }
+        };
+        this.nextId = 0;
+        this.stopped = false;
+    }
+
+    static SocketAddress address(String address) {
+        // a number is a port on the loopback interface, anything else is the path of a Unix domain socket
+        if (address.matches("[0-9]+"))
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    static SocketChannel connect(String address) throws IOException {
+        SocketAddress socket = address(address);
+        SocketChannel channel = SocketChannel.open((socket instanceof UnixDomainSocketAddress) ? StandardProtocolFamily.UNIX
+                                                                                                : StandardProtocolFamily.INET);
+        channel.connect(socket);
+        return channel;
+    }
+
+    public void serve() throws IOException {
+        // accept the connections until a STOP request, a stale socket file is replaced
+        ExecutorService connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "turing-server-connection");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (this.address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) this.address).getPath());
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+        }
+
+        try {
+            this.server.bind(this.address);
+            System.out.println("Turing machine server listening on: " + this.address);
+            while (!this.stopped) {
+                SocketChannel channel;
+                try {
+                    channel = this.server.accept();
+                } catch (IOException e) {
+                    if (this.stopped) break; // closed by STOP
+                    throw e;
+                }
+                connections.execute(() -> this.serve(channel));
+            }
+        } finally {
+            this.server.close();
+            connections.shutdownNow();
+            if (this.address instanceof UnixDomainSocketAddress)
+                Files.deleteIfExists(((UnixDomainSocketAddress) this.address).getPath());
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        // answer the requests of one connection in order
+        try (SocketChannel c = channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(c), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(c), StandardCharsets.UTF_8))) {
+            String line;
+            OutputStream raw = Channels.newOutputStream(c);
+            while ((line = in.readLine()) != null) {
+                String[] request = line.split(SEPARATOR);
+                if (request[0].equals("QUIT"))
+                    break;
+                this.answer(request, out, raw);
+                out.flush();
+                if (request[0].equals("STOP")) {
+                    this.stop();
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // the client went away, its runs are over
+        }
+    }
+
+    private void answer(String[] request, PrintWriter out, OutputStream raw) throws IOException {
+        // the response of a run with dump is followed by its tape, written to the raw stream of the connection
+        try {
+            switch (request[0]) {
+                case "MACHINE":
+                    if (request.length < 2 || request.length > 3)
+                        throw new IllegalArgumentException("expect: MACHINE <path> [optimize]");
+                    out.println("OK" + SEPARATOR + this.load(request[1], request.length == 3 && request[2].equals("optimize")));
+                    break;
+                case "RUN":
+                    if (request.length < 2)
+                        throw new IllegalArgumentException("expect: RUN <machine id> [<key>=<value>...]");
+                    this.run(Integer.parseInt(request[1]), request, out, raw);
+                    break;
+                case "STOP":
+                    out.println("OK");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown request: " + request[0]);
+            }
+        } catch (IOException e) {
+            throw e; // the connection is lost
+        } catch (Exception e) {
+            String message = (e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName();
+            out.println("ERROR" + SEPARATOR + message.trim().replaceAll("\\s+", " "));
+        }
+    }
+
+    private int load(String path, boolean optimize) throws Exception {
+        // a machine is parsed again only when its file changed since it was loaded
+        File file = new File(path);
+        String key = path + (optimize ? SEPARATOR + "optimize" : "");
+
+        if (!file.isFile())
+            throw new IllegalArgumentException(path + " (No such file or directory)");
+        synchronized (this.byPath) {
+            LoadedMachine loaded = this.byPath.get(key);
+            if (loaded != null && loaded.lastModified == file.lastModified() && loaded.length == file.length())
+                return loaded.id;
+        }
+
+        long lastModified = file.lastModified(), length = file.length();
+        CompiledMachine machine = MachineIO.load(path, this.cacheDirectory);
+        if (optimize)
+            machine = MachineOptimizer.optimize(machine);
+
+        synchronized (this.byPath) {
+            LoadedMachine loaded = new LoadedMachine(this.nextId++, key, machine, lastModified, length);
+            LoadedMachine replaced = this.byPath.put(key, loaded);
+            if (replaced != null)
+                this.byId.remove(replaced.id);
+            this.byId.put(loaded.id, loaded);
+            return loaded.id;
+        }
+    }
+
+    private void run(int id, String[] request, PrintWriter out, OutputStream raw) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        CompiledMachine machine;
+
+        synchronized (this.byPath) {
+            LoadedMachine loaded = this.byId.get(id);
+            if (loaded == null)
+                throw new IllegalArgumentException("Unknown machine: " + id + " (load it again)");
+            this.byPath.get(loaded.key); // used last
+            machine = loaded.machine;
+        }
+        for (int i = 2; i < request.length; i++) {
+            int equal = request[i].indexOf('=');
+            if (equal < 0) options.put(request[i], "");
+            else options.put(request[i].substring(0, equal), request[i].substring(equal + 1));
+        }
+
+        RunLimits limits = this.limits(options);
+        TuringMachine.engine engine = TuringMachine.engine.valueOf(options.getOrDefault("engine", "table").toUpperCase());
+        int blockSize = Integer.parseInt(options.getOrDefault("block-size", "0"));
+
+        this.runs.acquire();
+        try {
+            TuringMachine tm = new TuringMachine(machine, options.getOrDefault("tape", ""), false, false);
+            tm.setEngine(engine, blockSize);
+            tm.setLimits(limits);
+            tm.execute();
+
+            String result = "RESULT" + SEPARATOR + tm.getTermination() + SEPARATOR + tm.getFinalState() + SEPARATOR + tm.getSteps();
+            if (options.containsKey("dump")) {
+                // the index of the first cell comes with the result, the cells follow on their own line
+                Tape tape = tm.getRun().getTape();
+                out.println(result + SEPARATOR + (-tape.getNegativesSize()));
+                out.flush();
+                TapeIO.saveText(raw, tape);
+            } else {
+                out.println(result);
+            }
+        } finally {
+            this.runs.release();
+        }
+    }
+
+    private RunLimits limits(Map<String, String> options) {
+        // budgets asked by the request, within the budgets of the server
+        long maxSteps = Long.parseLong(options.getOrDefault("max-steps", String.valueOf(Long.MAX_VALUE)));
+        long maxCells = Long.parseLong(options.getOrDefault("max-cells", String.valueOf(Long.MAX_VALUE)));
+        long timeout = Long.parseLong(options.getOrDefault("timeout", "0"));
+
+        if (this.limits.getTimeoutMillis() > 0)
+            timeout = (timeout > 0) ? Math.min(timeout, this.limits.getTimeoutMillis()) : this.limits.getTimeoutMillis();
+        return new RunLimits(Math.min(maxSteps, this.limits.getMaxSteps()), Math.min(maxCells, this.limits.getMaxCells()),
+                             timeout, options.containsKey("detect-loops") || this.limits.detectsLoops());
+    }
+
+    private void stop() {
+        this.stopped = true;
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
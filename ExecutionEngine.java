@@ -0,0 +1,6 @@
+public interface ExecutionEngine {
+    /* alternative way of executing a run, it must reach the same final state, step count and tape as
+       the table execution of MachineRun.execute() */
+
+    void run(MachineRun run);
+}
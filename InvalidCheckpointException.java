@@ -0,0 +1,12 @@
+public class InvalidCheckpointException extends Exception {
+    private String errorMessage; 
+
+    public InvalidCheckpointException (String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public String getMessage () {
+        return this.errorMessage;
+    }
+    
+}
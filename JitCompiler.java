@@ -0,0 +1,356 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+public class JitCompiler {
+    /* compiles a machine into a class of its own, used by the JIT engine
+       the generated engine has one block of code per state, holding a switch on the symbol read with one
+       arm per transition, so the next state, the symbol written and the move are constants the JVM can
+       inline, and the self loops of a state stay in its block
+       the blocks are spread over methods of at most MAX_ARMS arms (a state counting as one arm), a method
+       runs its states until the machine goes to a state of another method, the budget of steps is exhausted
+       or no arm matches; the engine stops after a given number of steps, so it runs under the RunLimits
+       a (state, read) couple gives a transition through its key statesNb * read + state, the arms are
+       generated for the keys which can be reached this way, anything else is one step of the table execution,
+       so the results are identical: the states from state_number, the symbols of a state after its first
+       MAX_ARMS - 1 ones, the states after the first MAX_METHODS methods, the sparse keys
+       the source is compiled in memory by the JDK compiler against the classes of the emulator, read through
+       the class loader of this class, and loaded as a hidden class; the engines of the last MAX_CACHED
+       machines are cached by content hash of the machine (a hidden class is unloaded once its engine is
+       dropped) */
+
+    private static final String CLASS_NAME = "JitMachine";
+    private static final int MAX_ARMS = 128; // arms of a generated method, larger methods would not be compiled
+                                             // by the JVM (methods over 8000 bytes are only interpreted)
+    private static final int MAX_METHODS = 256; // generated methods, the states after them are left to the tables
+    private static final int MOVED = 0, NO_ARM = 1, LIMIT = 2; // why a generated method returns
+
+    private static final int MAX_CACHED = 64;
+    private static final Map<Long, Compiled> CACHE = new LinkedHashMap<Long, Compiled>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Compiled> eldest) {
+            return this.size() > MAX_CACHED;
+        }
+    }; // least recently used first, guarded by itself
+
+    private static class Compiled {
+        final CompiledMachine machine; // machine compiled, to check the hash does not collide
+        final ChunkedEngine engine;
+
+        Compiled(CompiledMachine machine, ChunkedEngine engine) {
+            this.machine = machine;
+            this.engine = engine;
+        }
+    }
+
+    public static boolean isAvailable() {
+        // the compiler is only shipped with the JDK
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    public static ChunkedEngine compile(CompiledMachine machine) {
+        // engine running the machine, compiled once for all the machines with the same content
+        // the compilation runs outside the lock, two threads may compile the same machine once
+        Compiled compiled;
+        synchronized (CACHE) {
+            compiled = CACHE.get(machine.getContentHash());
+        }
+        if (compiled == null) {
+            compiled = new Compiled(machine, generate(machine));
+            synchronized (CACHE) {
+                CACHE.put(machine.getContentHash(), compiled);
+            }
+        }
+        if (compiled.machine != machine && !compiled.machine.sameProgram(machine))
+            return generate(machine);
+        return compiled.engine;
+    }
+
+    static String source(CompiledMachine machine) {
+        // java source of the engine running the machine
+        return source(machine, methods(machine));
+    }
+
+    private static List<TreeMap<Integer, TreeMap<Integer, Integer>>> methods(CompiledMachine machine) {
+        // states compiled by every generated method: state -> read -> key
+        final int statesNb = machine.statesNb;
+        final int[] nextState = machine.nextState;
+        List<TreeMap<Integer, TreeMap<Integer, Integer>>> methods = new ArrayList<>();
+        TreeMap<Integer, TreeMap<Integer, Integer>> arms = new TreeMap<>();
+        boolean[] reached;
+        int size = 0;
+
+        // with statesNb = 0 the key does not depend on the symbol read, every lookup uses the tables
+        if (statesNb <= 0)
+            return methods;
+
+        // the run starts in state 0 and only reaches the next states of the transitions, the states from
+        // state_number have no key of their own and are left to the tables
+        reached = new boolean[statesNb];
+        reached[0] = true;
+        for (int key = 0; key < nextState.length; key++)
+            if (nextState[key] != CompiledMachine.UNDEFINED && nextState[key] < statesNb)
+                reached[nextState[key]] = true;
+
+        TreeMap<Integer, TreeMap<Integer, Integer>> reads = new TreeMap<>();
+        for (int key = 0; key < nextState.length; key++) {
+            int state = key % statesNb;
+            if (nextState[key] == CompiledMachine.UNDEFINED || !reached[state])
+                continue;
+            TreeMap<Integer, Integer> arm = reads.computeIfAbsent(state, s -> new TreeMap<>());
+            if (arm.size() < MAX_ARMS - 1)
+                arm.put(key / statesNb, key);
+        }
+
+        // a state counts as one arm, its loop and its switch take about the size of an arm
+        for (var state : reads.entrySet()) {
+            if (size + state.getValue().size() + 1 > MAX_ARMS) {
+                methods.add(arms);
+                if (methods.size() == MAX_METHODS)
+                    return methods;
+                arms = new TreeMap<>();
+                size = 0;
+            }
+            arms.put(state.getKey(), state.getValue());
+            size += state.getValue().size() + 1;
+        }
+        if (!arms.isEmpty())
+            methods.add(arms);
+        return methods;
+    }
+
+    private static String source(CompiledMachine machine, List<TreeMap<Integer, TreeMap<Integer, Integer>>> methods) {
+        StringBuilder src = new StringBuilder();
+
+        src.append("public final class ").append(CLASS_NAME).append(" implements ChunkedEngine {\n");
+        src.append("    private final int[] methodOf; // state -> generated method running it, -1 for the tables\n\n");
+        src.append("    public ").append(CLASS_NAME).append("(int[] methodOf) {\n");
+        src.append("        this.methodOf = methodOf;\n");
+        src.append("    }\n\n");
+        src.append("    public boolean runSteps(MachineRun run, long maxSteps) {\n");
+        src.append("        final int[] methodOf = this.methodOf;\n");
+        src.append("        final Tape tape = run.getTape();\n");
+        src.append("        final long start = run.getCurrentSteps();\n");
+        src.append("        int state, result;\n\n");
+        src.append("        while (true) {\n");
+        src.append("            state = run.getCurrentState();\n");
+        src.append("            switch ((state < methodOf.length) ? methodOf[state] : -1) {\n");
+        for (int m = 0; m < methods.size(); m++) {
+            src.append("            case ").append(m).append(":\n");
+            src.append("                result = this.states").append(m).append("(run, tape, maxSteps - (run.getCurrentSteps() - start));\n");
+            src.append("                break;\n");
+        }
+        src.append("            default:\n");
+        src.append("                result = ").append(NO_ARM).append(";\n");
+        src.append("            }\n");
+        src.append("            if (result == ").append(LIMIT).append(")\n");
+        src.append("                return false;\n");
+        src.append("            if (result == ").append(NO_ARM).append(") {\n");
+        src.append("                // no compiled arm for this couple: one step of the table execution\n");
+        src.append("                long left = maxSteps - (run.getCurrentSteps() - start);\n");
+        src.append("                if (run.runSteps(Math.min(left, 1)))\n");
+        src.append("                    return true;\n");
+        src.append("                if (left == 0)\n");
+        src.append("                    return false;\n");
+        src.append("            }\n");
+        src.append("        }\n");
+        src.append("    }\n");
+        for (int m = 0; m < methods.size(); m++)
+            method(src, m, methods.get(m), machine);
+        src.append("}\n");
+        return src.toString();
+    }
+
+    private static void method(StringBuilder src, int m, TreeMap<Integer, TreeMap<Integer, Integer>> arms,
+                               CompiledMachine machine) {
+        // method running the states of arms, returns MOVED when the machine goes to a state of another method
+        final int[] nextState = machine.nextState;
+        final int[] write = machine.write;
+        final int[] move = machine.move;
+
+        src.append("\n    private int states").append(m).append("(MachineRun run, Tape tape, long left) {\n");
+        src.append("        int state = run.getCurrentState(), index = run.getCurrentIndex(), result = ").append(MOVED).append(";\n");
+        src.append("        long steps = left;\n\n");
+        src.append("        dispatch: while (true) {\n");
+        src.append("            switch (state) {\n");
+        for (var s : arms.entrySet()) {
+            int state = s.getKey();
+            src.append("            case ").append(state).append(":\n");
+            src.append("                for (;;) {\n");
+            src.append("                    switch (tape.read(index)) {\n");
+            for (var r : s.getValue().entrySet()) {
+                int key = r.getValue();
+                src.append("                    case ").append(r.getKey()).append(": ");
+                src.append("if (left == 0) { result = ").append(LIMIT).append("; break dispatch; } ");
+                src.append("tape.write(index, ").append(write[key]).append("); ");
+                if (move[key] != 0)
+                    src.append("index").append(move[key] > 0 ? "++" : "--").append("; ");
+                src.append("left--; ");
+                if (nextState[key] == state)
+                    src.append("continue;\n");
+                else if (arms.containsKey(nextState[key]))
+                    src.append("state = ").append(nextState[key]).append("; continue dispatch;\n");
+                else
+                    src.append("state = ").append(nextState[key]).append("; break dispatch;\n");
+            }
+            src.append("                    }\n");
+            src.append("                    break;\n");
+            src.append("                }\n");
+            src.append("                break;\n");
+        }
+        src.append("            }\n");
+        src.append("            result = ").append(NO_ARM).append(";\n");
+        src.append("            break;\n");
+        src.append("        }\n\n");
+        src.append("        run.moveTo(state, index, run.getCurrentSteps() + (steps - left));\n");
+        src.append("        return result;\n");
+        src.append("    }\n");
+    }
+
+    private static ChunkedEngine generate(CompiledMachine machine) {
+        List<TreeMap<Integer, TreeMap<Integer, Integer>>> methods = methods(machine);
+        int[] methodOf = new int[Math.max(machine.statesNb, 0)];
+        byte[] bytecode = javac(source(machine, methods));
+
+        Arrays.fill(methodOf, -1);
+        for (int m = 0; m < methods.size(); m++)
+            for (int state : methods.get(m).keySet())
+                methodOf[state] = m;
+        try {
+            // the hidden class is defined in the package of this class, it can use its package-private members
+            Class<?> engine = MethodHandles.lookup().defineHiddenClass(bytecode, true).lookupClass();
+            return (ChunkedEngine) engine.getConstructor(int[].class).newInstance((Object) methodOf);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't load the compiled machine", e);
+        }
+    }
+
+    private static byte[] javac(String source) {
+        // compile the source in memory, against the classes of the emulator
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("The JIT engine needs a JDK, no java compiler was found");
+
+        ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+        StringWriter errors = new StringWriter();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + CLASS_NAME + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<JavaFileObject> classes = classes();
+        JavaFileManager files = new ForwardingJavaFileManager<JavaFileManager>(
+                compiler.getStandardFileManager(null, null, null)) {
+            @Override
+            public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                    boolean recurse) throws IOException {
+                // the class path is the emulator as its class loader sees it, whatever java.class.path holds
+                if (location != StandardLocation.CLASS_PATH)
+                    return super.list(location, packageName, kinds, recurse);
+                return (packageName.isEmpty() && kinds.contains(JavaFileObject.Kind.CLASS)) ? classes : List.of();
+            }
+
+            @Override
+            public String inferBinaryName(Location location, JavaFileObject file) {
+                if (file instanceof LoadedClass)
+                    return ((LoadedClass) file).binaryName;
+                return super.inferBinaryName(location, file);
+            }
+
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                    FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className + ".class"), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytecode;
+                    }
+                };
+            }
+        };
+
+        if (!compiler.getTask(errors, files, null, List.of("-g:none", "-proc:none"), null, List.of(file)).call())
+            throw new IllegalStateException("Can't compile the machine:\n" + errors);
+        return bytecode.toByteArray();
+    }
+
+    private static List<JavaFileObject> classes() {
+        // class files of the emulator classes the generated source can reach: the types it names and the types
+        // of their members, the emulator has no package so they are the classes of the unnamed package
+        ArrayDeque<Class<?>> queue = new ArrayDeque<>(List.of(ChunkedEngine.class, MachineRun.class));
+        Set<Class<?>> seen = new HashSet<>();
+        List<JavaFileObject> classes = new ArrayList<>();
+
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            while (type.isArray())
+                type = type.getComponentType();
+            if (type.isPrimitive() || !type.getPackageName().isEmpty() || type.isHidden() || !seen.add(type))
+                continue;
+            classes.add(new LoadedClass(type.getName()));
+            if (type.getSuperclass() != null)
+                queue.add(type.getSuperclass());
+            queue.addAll(Arrays.asList(type.getInterfaces()));
+            queue.addAll(Arrays.asList(type.getDeclaredClasses()));
+            if (type.getEnclosingClass() != null)
+                queue.add(type.getEnclosingClass());
+            for (Field field : type.getDeclaredFields())
+                queue.add(field.getType());
+            for (Method method : type.getDeclaredMethods()) {
+                queue.add(method.getReturnType());
+                queue.addAll(Arrays.asList(method.getParameterTypes()));
+                queue.addAll(Arrays.asList(method.getExceptionTypes()));
+            }
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                queue.addAll(Arrays.asList(constructor.getParameterTypes()));
+                queue.addAll(Arrays.asList(constructor.getExceptionTypes()));
+            }
+        }
+        return classes;
+    }
+
+    private static class LoadedClass extends SimpleJavaFileObject {
+        // class file of an emulator class, read from the class loader which loaded the emulator
+        private final String binaryName;
+
+        LoadedClass(String binaryName) {
+            super(URI.create("loader:///" + binaryName + ".class"), JavaFileObject.Kind.CLASS);
+            this.binaryName = binaryName;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            InputStream in = JitCompiler.class.getClassLoader().getResourceAsStream(this.binaryName + ".class");
+            if (in == null)
+                throw new FileNotFoundException(this.binaryName + ".class");
+            return in;
+        }
+    }
+}
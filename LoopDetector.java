@@ -0,0 +1,155 @@
+public class LoopDetector {
+    /* detection of non-halting runs, used by MachineRun.execute(RunLimits)
+       - exact repeats: the configuration (state, head, tape) is saved after 1, 2, 4, 8... chunks (Brent)
+         and compared with the configuration at the end of every chunk, an equal configuration means the
+         run cycles forever
+       - translated cycles: every time the head reaches a cell never visited at the right (resp. left) end of
+         the tape, everything beyond the head is blank; if it happens twice in the same state, and the cells
+         the machine read in between are the same on both occasions (shifted by the distance travelled),
+         the machine repeats the same moves shifted forever
+       both checks are exact, a run is never reported as a loop if it halts */
+
+    private static final int WINDOW = 4096; // cells saved behind the head for the translated cycles
+
+    private CompiledMachine machine;
+
+    // exact repeats
+    private long chunks, nextSnapshot;
+    private int snapState, snapIndex, snapNegatives, snapPositives;
+    private int[] snapCells;
+
+    // translated cycles at the right end (and the left end, mirrored)
+    private Edge right, left;
+
+    private static class Edge {
+        /* reference event: the head reached a new end of the tape */
+        long events, nextReference; // number of events, next event taken as reference
+        boolean set;
+        int state; // state of the machine at the reference event
+        int index; // position of the head at the reference event
+        int extreme; // farthest position from the end reached since the reference event
+        int[] window = new int[WINDOW]; // cells behind the head at the reference event, nearest first
+
+        Edge() {
+            this.events = 0;
+            this.nextReference = 1;
+            this.set = false;
+        }
+    }
+
+    public LoopDetector(CompiledMachine machine) {
+        this.machine = machine;
+        this.chunks = 0;
+        this.nextSnapshot = 1;
+        this.snapCells = null;
+        this.right = new Edge();
+        this.left = new Edge();
+    }
+
+    MachineRun.termination runSteps(MachineRun run, long maxSteps) {
+        // same loop as MachineRun.runSteps, watching the ends of the tape
+        // return HALTED, LOOP, or null if the steps have been run
+        final int statesNb = this.machine.statesNb;
+        final int[] nextState = this.machine.nextState;
+        final int[] write = this.machine.write;
+        final int[] move = this.machine.move;
+        final int size = nextState.length;
+        final Tape tape = run.getTape();
+        final Edge right = this.right, left = this.left;
+        int state = run.getCurrentState(), index = run.getCurrentIndex(), key, slot, toState, toWrite, toMove;
+        long steps = run.getCurrentSteps(), last = steps + maxSteps;
+        MachineRun.termination stop = null;
+
+        while (true) {
+            if (index >= tape.getPositivesSize()) {
+                if (this.reachEnd(right, tape, state, index, 1)) {
+                    stop = MachineRun.termination.LOOP;
+                    break;
+                }
+            } else if (-index > tape.getNegativesSize()) {
+                if (this.reachEnd(left, tape, state, index, -1)) {
+                    stop = MachineRun.termination.LOOP;
+                    break;
+                }
+            }
+
+            key = statesNb * tape.read(index) + state;
+            if (key >= 0 && key < size && nextState[key] != CompiledMachine.UNDEFINED) {
+                toState = nextState[key];
+                toWrite = write[key];
+                toMove = move[key];
+            } else if ((slot = this.machine.sparseSlot(key)) >= 0) {
+                toState = this.machine.sparseNextState[slot];
+                toWrite = this.machine.sparseWrite[slot];
+                toMove = this.machine.sparseMove[slot];
+            } else {
+                stop = MachineRun.termination.HALTED;
+                break;
+            }
+            if (steps == last)
+                break;
+
+            state = toState;
+            tape.write(index, toWrite);
+            index += toMove;
+            steps++;
+
+            if (index < right.extreme) right.extreme = index;
+            if (index > left.extreme) left.extreme = index;
+        }
+
+        run.moveTo(state, index, steps);
+        return stop;
+    }
+
+    boolean repeats(MachineRun run) {
+        // compare the configuration at the end of a chunk with the saved one, return true if they are equal
+        Tape tape = run.getTape();
+        int state = run.getCurrentState(), index = run.getCurrentIndex();
+
+        if (this.snapCells != null && state == this.snapState && index == this.snapIndex
+                && tape.getNegativesSize() == this.snapNegatives && tape.getPositivesSize() == this.snapPositives) {
+            boolean equal = true;
+            for (int i = -this.snapNegatives; i < this.snapPositives && equal; i++)
+                equal = tape.read(i) == this.snapCells[i + this.snapNegatives];
+            if (equal)
+                return true;
+        }
+
+        if (++this.chunks == this.nextSnapshot) {
+            this.nextSnapshot *= 2;
+            this.snapState = state;
+            this.snapIndex = index;
+            this.snapNegatives = tape.getNegativesSize();
+            this.snapPositives = tape.getPositivesSize();
+            this.snapCells = new int[this.snapNegatives + this.snapPositives];
+            tape.getCells(-this.snapNegatives, this.snapCells, 0, this.snapCells.length);
+        }
+        return false;
+    }
+
+    private boolean reachEnd(Edge edge, Tape tape, int state, int index, int side) {
+        // the head is on a cell never visited at one end of the tape (side +1 for right, -1 for left)
+        if (edge.set && edge.state == state) {
+            int depth = (edge.index - edge.extreme) * side; // farthest the head went back since the reference
+            if (depth <= WINDOW) {
+                boolean equal = true;
+                for (int d = 1; d <= depth && equal; d++)
+                    equal = tape.peek(index - d * side) == edge.window[d - 1];
+                if (equal)
+                    return true;
+            }
+        }
+
+        if (++edge.events == edge.nextReference) {
+            edge.nextReference *= 2;
+            edge.set = true;
+            edge.state = state;
+            edge.index = index;
+            edge.extreme = index;
+            for (int d = 1; d <= WINDOW; d++)
+                edge.window[d - 1] = tape.peek(index - d * side);
+        }
+        return false;
+    }
+}
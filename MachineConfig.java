@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+public class MachineConfig {
+    /* content of a configuration file: number of states, accepting states, tape offset and transitions
+       a transition is given with its key statesNb * read + state, a key may have several transitions
+       (nondeterministic machines), the deterministic machines keep the last one
+       a machine with several tapes (tapes_number:/int/;) reads, writes and moves on every tape in each
+       transition, its transitions are given as rows (see getMultiTransitions) */
+
+    private int statesNb;
+    private int tapesNb; // number of tapes of the machine, 1 unless tapes_number is given
+    private ArrayList<Integer> statesAccepting;
+    private ArrayList<Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>>> transitions; // key -> transition, in the order of the file
+    private ArrayList<int[]> multiTransitions; // transitions of a machine with several tapes, in the order of the file
+    private int tapeOffset;
+
+    public MachineConfig(int statesNb, ArrayList<Integer> statesAccepting,
+            ArrayList<Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>>> transitions, int tapeOffset) {
+        this(statesNb, 1, statesAccepting, transitions, new ArrayList<>(), tapeOffset);
+    }
+
+    public MachineConfig(int statesNb, int tapesNb, ArrayList<Integer> statesAccepting,
+            ArrayList<Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>>> transitions,
+            ArrayList<int[]> multiTransitions, int tapeOffset) {
+        this.statesNb = statesNb;
+        this.tapesNb = tapesNb;
+        this.statesAccepting = statesAccepting;
+        this.transitions = transitions;
+        this.multiTransitions = multiTransitions;
+        this.tapeOffset = tapeOffset;
+    }
+
+    public int getStatesNb() {
+        return this.statesNb;
+    }
+
+    public int getTapesNb() {
+        return this.tapesNb;
+    }
+
+    public ArrayList<Integer> getStatesAccepting() {
+        return this.statesAccepting;
+    }
+
+    public ArrayList<Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>>> getTransitions() {
+        return this.transitions;
+    }
+
+    public HashMap<Integer, Triplet<Integer, Integer, TuringMachine.direction>> getTransitionMap() {
+        // one transition per key, a later transition replaces an earlier one
+        HashMap<Integer, Triplet<Integer, Integer, TuringMachine.direction>> map = new HashMap<>();
+        for (Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>> t : this.transitions)
+            map.put(t.getFirst(), t.getSecond());
+        return map;
+    }
+
+    public ArrayList<int[]> getMultiTransitions() {
+        // rows of 1 + 3 * tapesNb + 1 values: state, the read symbols, next state, the written symbols, the moves
+        return this.multiTransitions;
+    }
+
+    public int getTapeOffset() {
+        return this.tapeOffset;
+    }
+
+    public static int readTapesNb(String configPath) throws FileNotFoundException {
+        // number of tapes declared before the transitions, without parsing the whole file
+        Scanner configReader = new Scanner(new File(configPath));
+        String[] lineSplited;
+        try {
+            while (configReader.hasNextLine()) {
+                lineSplited = configReader.nextLine().split(":|;");
+                if (lineSplited.length == 2 && lineSplited[0].equals("tapes_number"))
+                    return Integer.parseInt(lineSplited[1]);
+                if (lineSplited.length >= 1 && lineSplited[0].equals("transitions"))
+                    break;
+            }
+            return 1;
+        } catch (NumberFormatException e) {
+            return 1; // reported when the file is parsed
+        } finally {
+            configReader.close();
+        }
+    }
+
+    public static MachineConfig parse(Scanner configReader) throws InvalidConfigFileException {
+        // parse a configuration file, keeping every transition in the order of the file
+
+        int statesNb = 0, tapesNb = 1, tapeOffset = 0;
+        ArrayList<Integer> statesAccepting = new ArrayList<>();
+        ArrayList<Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>>> transitions = new ArrayList<>();
+        ArrayList<int[]> multiTransitions = new ArrayList<>();
+
+        if (! configReader.hasNextLine()) throw new InvalidConfigFileException("File is empty");
+
+        String line;
+        String[] lineSplited, initialState, finalState;
+        int params=0, i=0, is, ns, r, w;;
+        boolean intransitions = false;
+        TuringMachine.direction d;
+
+        // read the config file while there is lines to read
+        while (configReader.hasNextLine()) {
+            line = configReader.nextLine();
+            lineSplited = line.split(":|;");
+            i++;
+
+            if (intransitions) {
+                // parse the transition lines
+                if (line.endsWith(";")) intransitions = false; // we have read all the transitions
+
+                if (tapesNb > 1) {
+                    multiTransitions.add(parseMultiTransition(line, lineSplited, i, statesNb, tapesNb));
+                    continue;
+                }
+
+                // read the transitions for the turing machine, format expected: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT/STAY);
+                if (! (lineSplited.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                    + "      read: " + line + "\n"
+                                                                                    + "    expect: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT/STAY)\n");
+
+                initialState = lineSplited[0].split(",");
+                if (! (initialState.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                     + "      read: " + line + "\n"
+                                                                                     + "    expect: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT/STAY)\n");
+                finalState = lineSplited[1].split(",|;");
+                if (! (finalState.length == 3)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                   + "      read: " + line + "\n"
+                                                                                   + "    expect: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT/STAY)\n");
+                
+                is = Integer.parseInt(initialState[0].substring(1,initialState[0].length()));       // remove the initial parenthesis
+                r = Integer.parseInt(initialState[1].substring(0,initialState[1].length() - 1));    // remove the final parenthesis
+                ns = Integer.parseInt(finalState[0].substring(1,finalState[0].length()));           // remove the initial parenthesis
+                w = Integer.parseInt(finalState[1]);                                                // just convert should be alright
+                d = TuringMachine.direction.valueOf(finalState[2].substring(0,finalState[2].length() - 1));       // remove the final parenthesis
+
+                // the symbols can be any integer, a state can't be negative: -1 marks a missing transition in the tables
+                if (is < 0 || ns < 0) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                         + "      read: " + line + "\n"
+                                                                         + "    states must be non-negative\n");
+
+                //populate the transition map
+                transitions.add(new Pair<>(statesNb * r + is, new Triplet<>(ns, w, d)));
+            } else {
+                // parse all the other lines
+            
+                if (lineSplited.length < 1) throw new InvalidConfigFileException("Line " + i + " is invalid: \n"
+                                                                                + "      read: " + line + "\n");
+                
+                switch (lineSplited[0]) {
+                    case "state_number":
+                        // expect: "state_number:/int/;"
+                        if (! (lineSplited.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                            + "      read: " + line + "\n"
+                                                                                            + "    expect: state_number:/int/;\n");
+                        statesNb = Integer.parseInt(lineSplited[1]);
+                        params++;
+                        break;
+                    case "accepting_states":
+                        // expect: "accepting_states:/int/,/int/,...,/int/;"
+                        if (! (lineSplited.length == 2)) throw  new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                            + "      read: " + line + "\n"
+                                                                                            + "    expect: accepting_states:/int/,/int/,...,/int/;\n");
+                        String[] states = lineSplited[1].split(",");
+                        for (String s : states) statesAccepting.add(Integer.parseInt(s));
+                        params++;
+                        break;
+                    case "tapes_number":
+                        // optional, number of tapes of the machine (1 by default), expect: "tapes_number:/int/;"
+                        if (! (lineSplited.length == 2)) throw  new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                            + "      read: " + line + "\n"
+                                                                                            + "    expect: tapes_number:/int/;\n");
+                        tapesNb = Integer.parseInt(lineSplited[1]);
+                        if (tapesNb < 1) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                            + "      read: " + line + "\n"
+                                                                            + "    a machine has at least one tape\n");
+                        break;
+                    case "tape_offset":
+                        // with field is optional it will offset the position of the turing machine on the tape
+                        // check the format, expect: "tape_offset:/int/;"
+                        if (! (lineSplited.length == 2)) throw  new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                            + "      read: " + line + "\n"
+                                                                                            + "    expect: tape_offset:/int/;\n");
+                        tapeOffset = Integer.parseInt(lineSplited[1]);
+                        break;
+                    case "transitions":
+                        // check the format, expect: "transitions:"
+                        if (! (lineSplited.length == 1)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                                            + "      read: " + line + "\n"
+                                                                                            + "    expect: transitions:\n");
+                        intransitions = true; // we are ready to parse transition
+                        params++;
+                        break;
+                    default:
+                        throw new InvalidConfigFileException("Line " + i + " is invalid: Unkown argument\n"
+                                                        + "      read: " + line + "\n");
+                }
+            }
+        }
+
+        // they are 3 mandatory parameters so we check if we have parsed all of them
+        if (params != 3) throw new InvalidConfigFileException("Wrong number of parameters");
+
+        return new MachineConfig(statesNb, tapesNb, statesAccepting, transitions, multiTransitions, tapeOffset);
+    }
+
+    private static int[] parseMultiTransition(String line, String[] lineSplited, int i, int statesNb, int tapesNb)
+            throws InvalidConfigFileException {
+        // format expected: (/state/,/read 1/,...,/read k/):(/nextState/,/write 1/,...,/write k/,/move 1/,...,/move k/)
+        String expect = "    expect: (/state/,/read 1/,...,/read " + tapesNb + "/):(/nextState/,/write 1/,...,/write "
+                      + tapesNb + "/,RIGHT/LEFT/STAY,...)\n";
+        String[] initialState, finalState;
+        int[] row = new int[2 + 3 * tapesNb];
+
+        if (! (lineSplited.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                            + "      read: " + line + "\n" + expect);
+        initialState = lineSplited[0].split(",");
+        finalState = lineSplited[1].split(",|;");
+        if (! (initialState.length == 1 + tapesNb && finalState.length == 1 + 2 * tapesNb))
+            throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                               + "      read: " + line + "\n" + expect);
+
+        // remove the parenthesis around both parts
+        initialState[0] = initialState[0].substring(1);
+        initialState[tapesNb] = initialState[tapesNb].substring(0, initialState[tapesNb].length() - 1);
+        finalState[0] = finalState[0].substring(1);
+        finalState[2 * tapesNb] = finalState[2 * tapesNb].substring(0, finalState[2 * tapesNb].length() - 1);
+
+        row[0] = Integer.parseInt(initialState[0]);
+        for (int t = 0; t < tapesNb; t++) {
+            row[1 + t] = Integer.parseInt(initialState[1 + t]);
+            row[2 + tapesNb + t] = Integer.parseInt(finalState[1 + t]);
+            row[2 + 2 * tapesNb + t] = CompiledMachine.move(TuringMachine.direction.valueOf(finalState[1 + tapesNb + t]));
+            if (row[1 + t] < 0) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                                                   + "      read: " + line + "\n"
+                                                                   + "    read values must be positive\n");
+        }
+        row[1 + tapesNb] = Integer.parseInt(finalState[0]);
+
+        // the states are packed with the symbols read in the key of a transition
+        if (row[0] < 0 || row[0] >= statesNb || row[1 + tapesNb] < 0 || row[1 + tapesNb] >= statesNb)
+            throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
+                                               + "      read: " + line + "\n"
+                                               + "    states must be between 0 and state_number - 1\n");
+        return row;
+    }
+}
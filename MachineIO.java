@@ -0,0 +1,215 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class MachineIO {
+    /* loading and saving of compiled machines
+       - text format (.tm): the configuration file, see MachineConfig
+       - binary format (.tmc): header (magic, version, number of states, tape offset, size of the tables,
+         number of accepting states, number of sparse keys), the accepting states, the nextState and write
+         tables, the sparse keys with their next states and written symbols as big-endian 32 bits integers,
+         then the move tables as bytes; the file is read at once and copied into the tables
+       a cache directory keeps the binary form of the text files already parsed, named by the SHA-256 of the
+       text file, so loading a machine again only hashes its file
+       a compiled machine can also be written back as a text file, e.g. once optimized (see MachineOptimizer) */
+
+    public static final String BINARY_EXTENSION = ".tmc";
+
+    private static final int MAGIC = 0x544D434D; // "TMCM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+
+    private MachineIO() {
+    }
+
+    public static boolean isBinary(String path) {
+        return path.endsWith(BINARY_EXTENSION);
+    }
+
+    public static String defaultCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "turing-machine").toString();
+    }
+
+    public static CompiledMachine load(String path, String cacheDirectory) throws FileNotFoundException, InvalidConfigFileException {
+        // load a machine in the format given by its extension, a text file goes through the cache if there is one
+        if (isBinary(path))
+            return loadBinary(path);
+        if (cacheDirectory.isEmpty())
+            return CompiledMachine.load(path);
+
+        String cached = cachePath(path, cacheDirectory);
+        if (cached != null && new File(cached).isFile()) {
+            try {
+                return loadBinary(cached);
+            } catch (InvalidConfigFileException e) {
+                // damaged entry, it is replaced below
+            }
+        }
+
+        CompiledMachine machine = CompiledMachine.load(path);
+        if (cached != null)
+            store(cached, machine);
+        return machine;
+    }
+
+    static String cachePath(String path, String cacheDirectory) throws FileNotFoundException {
+        // entry of the cache for a text file, null if the file can't be hashed
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder name = new StringBuilder();
+
+            for (byte b : digest.digest(Files.readAllBytes(Paths.get(path))))
+                name.append(String.format("%02x", b));
+            return Paths.get(cacheDirectory, name + BINARY_EXTENSION).toString();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path + " (No such file or directory)");
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    static void store(String cached, CompiledMachine machine) {
+        // write the entry in a temporary file then rename it, so a concurrent load never reads half an entry
+        // the cache is only an optimization: an entry which can't be written is skipped
+        try {
+            Path target = Paths.get(cached);
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                saveBinary(tmp.toString(), machine);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // the machine was loaded anyway
+        }
+    }
+
+    public static void saveBinary(String path, CompiledMachine machine) throws IOException {
+        int size = machine.nextState.length, sparseNb = machine.sparseKeys.length;
+        int[] accepting = machine.getAcceptingStates();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * accepting.length + 9 * size + 13 * sparseNb);
+
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(machine.statesNb).putInt(machine.getTapeOffset());
+        buffer.putInt(size).putInt(accepting.length).putInt(sparseNb);
+        buffer.asIntBuffer().put(accepting).put(machine.nextState).put(machine.write)
+              .put(machine.sparseKeys).put(machine.sparseNextState).put(machine.sparseWrite);
+        buffer.position(buffer.position() + 4 * (accepting.length + 2 * size + 3 * sparseNb));
+        for (int key = 0; key < size; key++)
+            buffer.put((byte) machine.move[key]);
+        for (int slot = 0; slot < sparseNb; slot++)
+            buffer.put((byte) machine.sparseMove[slot]);
+
+        Files.write(Paths.get(path), buffer.array());
+    }
+
+    public static void saveText(String path, CompiledMachine machine) throws IOException {
+        Files.write(Paths.get(path), toText(machine).getBytes());
+    }
+
+    public static String toText(CompiledMachine machine) {
+        // the machine in the text format, its transitions sorted by state then by symbol read
+        // a state is needed after accepting_states, a machine without accepting state gets one which does not exist
+        final int statesNb = machine.statesNb;
+        int[] accepting = machine.getAcceptingStates();
+        StringBuilder sb = new StringBuilder();
+        String separator = "";
+
+        sb.append("state_number:" + statesNb + ";\n");
+        sb.append("accepting_states:");
+        for (int state : accepting) {
+            sb.append(separator + state);
+            separator = ",";
+        }
+        sb.append(((accepting.length == 0) ? String.valueOf(statesNb) : "") + ";\n");
+        if (machine.getTapeOffset() != 0)
+            sb.append("tape_offset:" + machine.getTapeOffset() + ";\n");
+        sb.append("transitions:");
+        separator = "\n";
+        for (int state = 0; state < statesNb; state++) {
+            for (int key = state; key < machine.nextState.length; key += statesNb) {
+                if (machine.nextState[key] == CompiledMachine.UNDEFINED) continue;
+                sb.append(separator + "(" + state + "," + (key / statesNb) + "):(" + machine.nextState[key] + ","
+                          + machine.write[key] + "," + direction(machine.move[key]) + ")");
+            }
+        }
+        for (int slot = 0; slot < machine.sparseKeys.length; slot++) {
+            // sorted by key, the couple gives back the key even for a negative symbol
+            int key = machine.sparseKeys[slot];
+            int state = (statesNb > 0) ? Math.floorMod(key, statesNb) : key, read = (statesNb > 0) ? Math.floorDiv(key, statesNb) : 0;
+            sb.append(separator + "(" + state + "," + read + "):("
+                      + machine.sparseNextState[slot] + "," + machine.sparseWrite[slot] + ","
+                      + direction(machine.sparseMove[slot]) + ")");
+        }
+        sb.append(";\n");
+        return sb.toString();
+    }
+
+    private static String direction(int move) {
+        return (move > 0) ? "RIGHT" : (move < 0) ? "LEFT" : "STAY";
+    }
+
+    public static CompiledMachine loadBinary(String path) throws FileNotFoundException, InvalidConfigFileException {
+        ByteBuffer buffer;
+        int statesNb, tapeOffset, size, acceptingNb, sparseNb;
+        int[] accepting, nextState, write, move, sparseKeys, sparseNextState, sparseWrite, sparseMove;
+
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path + " (No such file or directory)");
+        } catch (IOException e) {
+            throw new InvalidConfigFileException("Can't read the compiled machine " + path + ": " + e.getMessage());
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new InvalidConfigFileException("Not a compiled machine: " + path);
+        statesNb = buffer.getInt();
+        tapeOffset = buffer.getInt();
+        size = buffer.getInt();
+        acceptingNb = buffer.getInt();
+        sparseNb = buffer.getInt();
+        if (size < 0 || acceptingNb < 0 || sparseNb < 0
+                || buffer.remaining() != 4L * acceptingNb + 9L * size + 13L * sparseNb)
+            throw new InvalidConfigFileException("The compiled machine " + path + " is truncated");
+
+        accepting = new int[acceptingNb];
+        nextState = new int[size];
+        write = new int[size];
+        move = new int[size];
+        sparseKeys = new int[sparseNb];
+        sparseNextState = new int[sparseNb];
+        sparseWrite = new int[sparseNb];
+        sparseMove = new int[sparseNb];
+        buffer.asIntBuffer().get(accepting).get(nextState).get(write).get(sparseKeys).get(sparseNextState).get(sparseWrite);
+        buffer.position(buffer.position() + 4 * (acceptingNb + 2 * size + 3 * sparseNb));
+        for (int key = 0; key < size; key++) {
+            move[key] = buffer.get();
+            if (move[key] < -1 || move[key] > 1 || nextState[key] < CompiledMachine.UNDEFINED)
+                throw new InvalidConfigFileException("The compiled machine " + path + " is invalid");
+        }
+        for (int slot = 0; slot < sparseNb; slot++) {
+            // the sparse keys are sorted and outside the dense tables
+            sparseMove[slot] = buffer.get();
+            if (sparseMove[slot] < -1 || sparseMove[slot] > 1 || sparseNextState[slot] < 0
+                    || (sparseKeys[slot] >= 0 && sparseKeys[slot] < size) || (slot > 0 && sparseKeys[slot] <= sparseKeys[slot - 1]))
+                throw new InvalidConfigFileException("The compiled machine " + path + " is invalid");
+        }
+        for (int state : accepting)
+            if (state < 0)
+                throw new InvalidConfigFileException("The compiled machine " + path + " is invalid");
+
+        return new CompiledMachine(statesNb, nextState, write, move, sparseKeys, sparseNextState, sparseWrite, sparseMove,
+                                   accepting, tapeOffset);
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class MachineOptimizer {
+    /* optimization pass between the parsing and the execution of a machine
+       - the states which can't be reached from s0 are removed with their transitions
+       - the equivalent states are merged: the states are first split by acceptance and by the symbols they
+         have a transition for (with the symbol written and the move), then a class is split while two of its
+         states go to different classes for the same symbol (partition refinement), what is left are states
+         doing exactly the same steps from any tape
+       - the classes are numbered in the order they are reached from s0, s0 staying 0
+       the optimized machine applies the same number of steps and leaves the same tape, only the number of
+       its final state can change
+       a machine whose states are not all below state_number is returned as is: its keys do not give its
+       (state, read) couples, so they can't be renumbered; so is a machine with sparse keys (see CompiledMachine) */
+
+    private MachineOptimizer() {
+    }
+
+    public static CompiledMachine optimize(CompiledMachine machine) {
+        final int statesNb = machine.statesNb;
+        final int size = machine.nextState.length;
+        final int readsNb = (statesNb > 0) ? (size + statesNb - 1) / statesNb : 0; // symbols read are below readsNb
+
+        if (statesNb <= 0 || machine.hasSparseTransitions())
+            return machine;
+        for (int key = 0; key < size; key++)
+            if (machine.nextState[key] >= statesNb)
+                return machine;
+
+        // states reachable from s0, in breadth-first order
+        int[] order = new int[statesNb];
+        boolean[] reached = new boolean[statesNb];
+        int reachedNb = 1;
+        order[0] = 0;
+        reached[0] = true;
+        for (int i = 0; i < reachedNb; i++) {
+            for (int read = 0; read < readsNb; read++) {
+                int key = machine.key(order[i], read);
+                if (machine.hasTransition(key) && !reached[machine.nextState[key]]) {
+                    reached[machine.nextState[key]] = true;
+                    order[reachedNb++] = machine.nextState[key];
+                }
+            }
+        }
+
+        int[] classOf = refine(machine, order, reachedNb, readsNb);
+
+        // number the classes in the order their first state was reached, s0 is the first one
+        int[] number = new int[reachedNb];
+        int classesNb = 0;
+        Arrays.fill(number, -1);
+        for (int i = 0; i < reachedNb; i++)
+            if (number[classOf[order[i]]] < 0)
+                number[classOf[order[i]]] = classesNb++;
+
+        // one state of each class gives the transitions of the class
+        int[] representative = new int[classesNb];
+        for (int i = reachedNb - 1; i >= 0; i--)
+            representative[number[classOf[order[i]]]] = order[i];
+
+        int newSize = 0;
+        for (int c = 0; c < classesNb; c++)
+            for (int read = 0; read < readsNb; read++)
+                if (machine.hasTransition(machine.key(representative[c], read)))
+                    newSize = Math.max(newSize, classesNb * read + c + 1);
+
+        int[] nextState = new int[newSize], write = new int[newSize], move = new int[newSize];
+        List<Integer> accepting = new ArrayList<>();
+        Arrays.fill(nextState, CompiledMachine.UNDEFINED);
+        for (int c = 0; c < classesNb; c++) {
+            if (machine.isAccepting(representative[c]))
+                accepting.add(c);
+            for (int read = 0; read < readsNb; read++) {
+                int key = machine.key(representative[c], read);
+                if (!machine.hasTransition(key)) continue;
+                int newKey = classesNb * read + c;
+                nextState[newKey] = number[classOf[machine.nextState[key]]];
+                write[newKey] = machine.write[key];
+                move[newKey] = machine.move[key];
+            }
+        }
+
+        return new CompiledMachine(classesNb, nextState, write, move,
+                                   accepting.stream().mapToInt(Integer::intValue).toArray(), machine.getTapeOffset());
+    }
+
+    private static int[] refine(CompiledMachine machine, int[] order, int reachedNb, int readsNb) {
+        // partition refinement over the reached states, classOf[state] is the class of the state
+        int[] classOf = new int[machine.statesNb];
+        int classesNb = 0, previousNb = -1;
+        HashMap<List<Integer>, Integer> classes = new HashMap<>();
+
+        // first partition: acceptance, then what the state does for every symbol
+        for (int i = 0; i < reachedNb; i++) {
+            List<Integer> signature = new ArrayList<>();
+            signature.add(machine.isAccepting(order[i]) ? 1 : 0);
+            for (int read = 0; read < readsNb; read++) {
+                int key = machine.key(order[i], read);
+                if (machine.hasTransition(key)) {
+                    signature.add(read);
+                    signature.add(machine.write[key]);
+                    signature.add(machine.move[key]);
+                }
+            }
+            classOf[order[i]] = classes.computeIfAbsent(signature, s -> classes.size());
+        }
+        classesNb = classes.size();
+
+        // split the classes by the classes of the next states until nothing changes
+        while (classesNb != previousNb) {
+            int[] refined = new int[machine.statesNb];
+            classes.clear();
+            for (int i = 0; i < reachedNb; i++) {
+                List<Integer> signature = new ArrayList<>();
+                signature.add(classOf[order[i]]);
+                for (int read = 0; read < readsNb; read++) {
+                    int key = machine.key(order[i], read);
+                    if (machine.hasTransition(key))
+                        signature.add(classOf[machine.nextState[key]]);
+                }
+                refined[order[i]] = classes.computeIfAbsent(signature, s -> classes.size());
+            }
+            previousNb = classesNb;
+            classesNb = classes.size();
+            classOf = refined;
+        }
+        return classOf;
+    }
+}
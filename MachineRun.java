@@ -0,0 +1,329 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+public class MachineRun {
+    /* one execution of a compiled machine: its tape, reading head and current state
+       a run is used by one thread at a time, but it can be reset and reused for another tape
+       (or another machine) without reallocating its tape buffers */
+
+    public static enum termination {
+        ACCEPTED, HALTED, STEP_LIMIT, CELL_LIMIT, TIME_LIMIT, CONFIG_LIMIT, LOOP
+    }; // why a run stopped: halted in an accepting state, halted in another state, a budget of the RunLimits
+       // was exceeded (CONFIG_LIMIT: the configurations of a NondeterministicRun), or the run was detected
+       // as non-halting
+
+    static final int CHUNK_STEPS = 1 << 16; // steps run between two checks of the limits
+
+    private CompiledMachine machine; // machine executed, shared with the other runs
+
+    private Tape tape; // tape of the machine, infinite in both directions
+    private RunLengthTape runLengthTape; // tape left by the run length engine, copied to tape when it is read
+
+    private int currentState; // current state of the turring machine
+    private int currentIndex; // current index of the reading head
+
+    private long steps; // number of transitions applied by the execution
+
+    private boolean ran, accepted;
+    private termination stop; // reason of the end of the run
+
+    public MachineRun(CompiledMachine machine) {
+        this.tape = new Tape();
+        this.reset(machine);
+    }
+
+    public void reset() {
+        this.reset(this.machine);
+    }
+
+    public void reset(CompiledMachine machine) {
+        // go back to the initial configuration: blank tape, head at the offset, state 0
+        this.machine = machine;
+        this.runLengthTape = null;
+        this.tape.clear();
+        this.currentState = 0;
+        this.currentIndex = machine.getTapeOffset();
+        this.steps = 0;
+        this.ran = false;
+        this.accepted = false;
+        this.stop = null;
+
+        // offset the position of the turing machine on the tape, the cells before it are created
+        for (int o = 0; o <= this.currentIndex; o++)
+            this.tape.append(0);
+    }
+
+    void replaceMachine(CompiledMachine machine) {
+        // continue the run with an equivalent machine (see MachineOptimizer), the tape and the head are kept
+        this.machine = machine;
+    }
+
+    public CompiledMachine getMachine() {
+        return this.machine;
+    }
+
+    public Tape getTape() {
+        if (this.runLengthTape != null) {
+            this.runLengthTape.materialize(this.tape);
+            this.runLengthTape = null;
+        }
+        return this.tape;
+    }
+
+    public int getFinalState() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its final state");
+        return this.currentState;
+    }
+
+    public boolean getAccepted() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its accepting state");
+        return this.accepted;
+    }
+
+    public long getSteps() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its number of steps");
+        return this.steps;
+    }
+
+    public termination getTermination() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its termination");
+        return this.stop;
+    }
+
+    public void loadTape(String tapePath) throws FileNotFoundException, InvalidTapeFileException {
+        // load the initial tape after a reset, the format is given by the extension (see TapeIO)
+        TapeIO.load(tapePath, this.tape);
+    }
+
+    public void loadTape(InputStream in) throws IOException, InvalidTapeFileException {
+        // load a tape in the text format after a reset
+        TapeIO.loadText(in, this.tape);
+    }
+
+    public void execute() {
+        // the chunks only publish the steps to the live view (see RunMonitor)
+        long published = this.steps;
+
+        RunMonitor.INSTANCE.started();
+        while (!this.runSteps(CHUNK_STEPS)) {
+            RunMonitor.INSTANCE.ran(this.steps - published);
+            published = this.steps;
+        }
+        RunMonitor.INSTANCE.ended(this.steps - published);
+        this.finish();
+    }
+
+    public void execute(RunLimits limits) {
+        this.execute(limits, null);
+    }
+
+    public void execute(RunLimits limits, Checkpointer checkpointer) {
+        this.execute(limits, checkpointer, null);
+    }
+
+    public void execute(RunLimits limits, Checkpointer checkpointer, ChunkedEngine engine) {
+        // same execution as execute, stopped when a budget of the limits is exceeded
+        // the steps are run by chunks, the limits are checked (and the checkpoints taken) between two chunks
+        // the chunks are run by the engine if there is one, the table execution otherwise
+        if (limits.isUnlimited() && checkpointer == null && engine == null) {
+            this.execute();
+            return;
+        }
+
+        LoopDetector detector = limits.detectsLoops() ? new LoopDetector(this.machine) : null; // only repeats with an engine
+        long deadline = (limits.getTimeoutMillis() > 0) ? System.nanoTime() + limits.getTimeoutMillis() * 1_000_000 : 0;
+        long chunk, startSteps;
+        int startIndex;
+        termination stop = null;
+
+        if (checkpointer != null)
+            checkpointer.started(this);
+        RunMonitor.INSTANCE.started();
+        while (stop == null) {
+            startIndex = this.currentIndex;
+            startSteps = this.steps;
+            chunk = Math.min(CHUNK_STEPS, limits.getMaxSteps() - this.steps);
+            if (engine != null) {
+                if (engine.runSteps(this, Math.max(chunk, 0)))
+                    stop = termination.HALTED;
+            } else if (detector != null) {
+                stop = detector.runSteps(this, Math.max(chunk, 0));
+            } else if (this.runSteps(Math.max(chunk, 0))) {
+                stop = termination.HALTED;
+            }
+
+            if (checkpointer != null) // a stopped chunk is marked too, its cells are saved by checkpointer.stopped
+                checkpointer.marked(startIndex, this.steps - startSteps);
+            RunMonitor.INSTANCE.ran(this.steps - startSteps);
+            if (stop != null)
+                break;
+            if (checkpointer != null)
+                checkpointer.afterChunk(this);
+            if (this.steps >= limits.getMaxSteps())
+                stop = termination.STEP_LIMIT;
+            else if ((long) this.tape.getNegativesSize() + this.tape.getPositivesSize() > limits.getMaxCells())
+                stop = termination.CELL_LIMIT;
+            else if (deadline != 0 && System.nanoTime() - deadline > 0)
+                stop = termination.TIME_LIMIT;
+            else if (detector != null && detector.repeats(this))
+                stop = termination.LOOP;
+        }
+
+        RunMonitor.INSTANCE.ended(0);
+        if (engine != null)
+            engine.stopped(this);
+
+        if (checkpointer != null && stop != termination.HALTED)
+            checkpointer.stopped(this);
+
+        this.ran = true;
+        if (stop == termination.HALTED) {
+            this.finish();
+        } else {
+            this.accepted = false;
+            this.stop = stop;
+        }
+    }
+
+    public void execute(ExecutionEngine engine) {
+        // same execution as execute, by another engine
+        long startSteps = this.steps;
+
+        RunMonitor.INSTANCE.started();
+        engine.run(this);
+        RunMonitor.INSTANCE.ended(this.steps - startSteps);
+        this.finish();
+    }
+
+    public void executeDisplay() {
+        // same execution as execute but display every step, the tape and the final position
+        this.executeDisplay(1, 0, Long.MAX_VALUE);
+    }
+
+    public void executeDisplay(long every, long from, long to) {
+        // same as executeDisplay, only displaying the steps in [from, to) taken every `every` steps
+        this.executeDisplay(RunLimits.NONE, every, from, to);
+    }
+
+    public void executeDisplay(RunLimits limits, long every, long from, long to) {
+        // same as executeDisplay, stopped when a budget of the limits is exceeded
+        this.executeTraced(limits, every, from, to);
+    }
+
+    private void finish() {
+        this.ran = true;
+        this.accepted = this.machine.isAccepting(this.currentState);
+        this.stop = this.accepted ? termination.ACCEPTED : termination.HALTED;
+    }
+
+    int getCurrentState() {
+        return this.currentState;
+    }
+
+    int getCurrentIndex() {
+        return this.currentIndex;
+    }
+
+    long getCurrentSteps() {
+        return this.steps;
+    }
+
+    void moveTo(int state, int index, long steps) {
+        // set the configuration reached by an engine running this run
+        this.currentState = state;
+        this.currentIndex = index;
+        this.steps = steps;
+    }
+
+    void setRunLengthTape(RunLengthTape tape) {
+        // the tape is only copied to the cells if it is read, it may be much larger than its runs
+        this.runLengthTape = tape;
+    }
+
+    boolean runSteps(long maxSteps) {
+        // hot loop: only primitive locals and arrays, nothing is allocated per step
+        // apply at most maxSteps transitions, return true if the machine halted
+        final int statesNb = this.machine.statesNb;
+        final int[] nextState = this.machine.nextState;
+        final int[] write = this.machine.write;
+        final int[] move = this.machine.move;
+        final int size = nextState.length;
+        final Tape tape = this.tape;
+        int state = this.currentState, index = this.currentIndex, key;
+        long steps = this.steps, last = (maxSteps > Long.MAX_VALUE - steps) ? Long.MAX_VALUE : steps + maxSteps;
+
+        // Read the first cell to initialize the machine
+        key = statesNb * tape.read(index) + state;
+
+        // iterate until the machine reach a state where no transition is define for the
+        // current value
+        while (true) {
+            while (key >= 0 && key < size && nextState[key] != CompiledMachine.UNDEFINED) {
+                if (steps == last) {
+                    this.moveTo(state, index, steps);
+                    return false;
+                }
+                state = nextState[key]; // update the state of the machine
+                tape.write(index, write[key]); // write on the tape
+                index += move[key]; // move the reading head
+                key = statesNb * tape.read(index) + state; // read the new cell
+                steps++;
+            }
+
+            // the key is outside the dense tables, it may still have a sparse transition
+            int slot = this.machine.sparseSlot(key);
+            if (slot < 0)
+                break;
+            if (steps == last) {
+                this.moveTo(state, index, steps);
+                return false;
+            }
+            state = this.machine.sparseNextState[slot];
+            tape.write(index, this.machine.sparseWrite[slot]);
+            index += this.machine.sparseMove[slot];
+            key = statesNb * tape.read(index) + state;
+            steps++;
+        }
+
+        this.moveTo(state, index, steps);
+        return true;
+    }
+
+    private void executeTraced(RunLimits limits, long every, long from, long to) {
+        // the steps are displayed by a trace writer, then the final tape is displayed
+        int read, i;
+
+        System.out.println("Execution :");
+        System.out.println("  Step  |  Tape Pos  |  Transition");
+
+        try {
+            TraceWriter trace = TraceWriter.console();
+            this.execute(limits, null, new TracingEngine(this.machine, trace, every, from, to));
+            trace.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (this.stop != termination.ACCEPTED && this.stop != termination.HALTED) {
+            System.out.printf("Run stopped: %s after %d steps (state: %d)\n", this.stop, this.steps, this.currentState);
+            return;
+        }
+
+        read = this.tape.read(this.currentIndex);
+        System.out.printf("Can't find the transition for: (state: %d ; read: %d)\n", this.currentState, read);
+        System.out.printf("Current Tape position: %d \n", this.currentIndex);
+        System.out.print(("    "));
+        for (i = -this.tape.getNegativesSize(); i < this.tape.getPositivesSize(); i++)
+            System.out.printf((i < 0) ? " %+4d " : " %-+4d ", i);
+        System.out.print("\n    ");
+        for (i = -this.tape.getNegativesSize(); i < this.tape.getPositivesSize(); i++)
+            System.out.printf((i < 0) ? " %3d  " : "  %-3d ", this.tape.read(i));
+        System.out.println();
+    }
+}
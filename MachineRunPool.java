@@ -0,0 +1,44 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MachineRunPool {
+    /* thread safe pool of runs of one compiled machine
+       a released run keeps its tape buffers, so acquiring it again does not allocate */
+
+    private CompiledMachine machine;
+    private ConcurrentLinkedQueue<MachineRun> idle; // runs ready to be acquired
+    private AtomicInteger idleNb; // size of idle (the size of the queue is not constant time)
+    private int maxIdle; // runs released when the pool already holds maxIdle runs are dropped
+
+    public MachineRunPool(CompiledMachine machine, int maxIdle) {
+        this.machine = machine;
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.idleNb = new AtomicInteger(0);
+        this.maxIdle = maxIdle;
+    }
+
+    public CompiledMachine getMachine() {
+        return this.machine;
+    }
+
+    public MachineRun acquire() {
+        // return a run in its initial configuration, to be released once its results have been read
+        MachineRun run = this.idle.poll();
+        if (run == null)
+            return new MachineRun(this.machine);
+        this.idleNb.decrementAndGet();
+        return run;
+    }
+
+    public void release(MachineRun run) {
+        // the run must not be used after being released
+        if (run.getMachine() != this.machine)
+            throw new IllegalArgumentException("The run does not belong to this pool");
+        if (this.idleNb.incrementAndGet() > this.maxIdle) {
+            this.idleNb.decrementAndGet();
+            return;
+        }
+        run.reset();
+        this.idle.offer(run);
+    }
+}
@@ -1,24 +1,182 @@
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
 public class Main {
     public static void main(String[] args) {
-        assert args.length <= 4;
-
         String help = new String("Usage: The program expect the following arguments:\n"
                                + "  [Mandatory] | -machine [path] : path to the turing machine to emulate\n"
-                               + "  [Optionnal] | -tape [path]    : path to initial tape state\n"
+                               + "  [Optionnal] | -compile [path] : write the machine in the binary format (.tmc) instead of running it\n"
+                               + "  [Optionnal] | -optimize       : run an equivalent machine without unreachable and duplicated states (the final state number can change)\n"
+                               + "  [Optionnal] | -optimize-output [path] : write the optimized machine in the text format (.tm) instead of running it\n"
+                               + "  [Optionnal] | -cache [dir]    : directory of the compiled machines cache (default: ~/.cache/turing-machine)\n"
+                               + "  [Optionnal] | -no-cache       : always parse the machine file\n"
+                               + "  [Optionnal] | -tape [path]    : path to initial tape state, given once per tape for a machine with several tapes\n"
                                + "  [Optionnal] | -display        : the emulator will display detailed information during the excution\n"
-                               + "  [Optionnal] | -debug          : the emulator will display the debug information\n");
+                               + "  [Optionnal] | -debug          : the emulator will display the debug information\n"
+                               + "  [Optionnal] | -trace [path]   : write every step to a file in the background, binary if it ends with .trace, text otherwise\n"
+                               + "  [Optionnal] | -trace-every [n]: only trace (or display) one step every n steps\n"
+                               + "  [Optionnal] | -trace-range [from] [to] : only trace (or display) the steps from `from` (included) to `to` (excluded)\n"
+                               + "  [Optionnal] | -profile        : count the visits of every state and transition and print a report after the run\n"
+                               + "  [Optionnal] | -profile-json [path] : also write the profile to a JSON file\n"
+                               + "  [Optionnal] | -dump [path]    : write the final tape to a file, binary if it ends with .tpb, text otherwise (once per tape),\n"
+                               + "                               a tape written left of index 0 is only dumped in binary\n"
+                               + "  [Optionnal] | -engine [name]  : execution engine, table (default), block (memoized macro steps), rle (run length encoded tape) or jit (class generated for the machine)\n"
+                               + "  [Optionnal] | -block-size [n] : number of cells in a block for the block engine (default: chosen from the symbols)\n"
+                               + "  [Optionnal] | -max-steps [n]  : stop the run after n steps\n"
+                               + "  [Optionnal] | -max-cells [n]  : stop the run when the tape holds more than n cells\n"
+                               + "  [Optionnal] | -timeout [ms]   : stop the run after the given time\n"
+                               + "  [Optionnal] | -detect-loops   : stop the run when it is detected as non-halting\n"
+                               + "  [Optionnal] | -checkpoint [path] : save the run to a file periodically, so it can be resumed\n"
+                               + "  [Optionnal] | -checkpoint-every [s] : time between two checkpoints (default: 60)\n"
+                               + "  [Optionnal] | -resume [path]  : continue the run saved in a checkpoint file instead of starting on the tape\n"
+                               + "  [Optionnal] | -ntm           : run a nondeterministic machine (several transitions for a state and a symbol), explored in parallel\n"
+                               + "  [Optionnal] | -max-configs [n] : with -ntm, stop the exploration when more than n configurations were reached (instead of -max-cells)\n"
+                               + "  [Optionnal] | -search [n] [m] : search the n states, m symbols machines running the longest (busy beaver), -max-steps is the budget of a machine\n"
+                               + "  [Optionnal] | -batch [path]   : run the machine on every .tp file of a directory (or listed in a file)\n"
+                               + "  [Optionnal] | -output [path]  : batch results file, JSON lines if it ends with .jsonl, CSV otherwise (default: standard output), or best machine of a search\n"
+                               + "  [Optionnal] | -threads [n]    : number of tapes run in parallel in batch mode, or of runs at once in server mode (default: number of cores)\n"
+                               + "  [Optionnal] | -server [address] : keep the emulator running and serve the runs, address is a loopback port or a Unix socket path\n"
+                               + "                               the budgets given with it bound every run (default: -max-cells 134217728 -timeout 60000)\n"
+                               + "  [Optionnal] | -client [address] : run the machine on the tape through a server started with -server\n"
+                               + "  [Optionnal] | -stop           : with -client, stop the server\n");
 
-        String configFile="", tapeFile="";
+        String configFile="", tapeFile="", traceFile="", dumpFile="", batchFile="", outputFile="", checkpointFile="", resumeFile="", profileFile="", compileFile="", optimizeFile="";
+        String serverAddress="", clientAddress="";
+        String cacheDirectory = MachineIO.defaultCacheDirectory();
         Boolean debug=false, display=false;
+        int threads = Runtime.getRuntime().availableProcessors(), blockSize = 0, searchStates = 0, searchSymbols = 0;
+        long maxSteps = Long.MAX_VALUE, maxCells = Long.MAX_VALUE, maxConfigs = Long.MAX_VALUE, timeout = 0;
+        long traceEvery = 1, traceFrom = 0, traceTo = Long.MAX_VALUE;
+        long checkpointEvery = 60;
+        boolean detectLoops = false, nondeterministic = false, profile = false, optimize = false, stopServer = false;
+        List<String> tapeFiles = new ArrayList<>(), dumpFiles = new ArrayList<>(); // one per tape
+        TuringMachine.engine engine = TuringMachine.engine.TABLE;
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "-machine": {
                     i++;
                     configFile = args[i];
                     break;}
+                case "-compile":
+                    i++;
+                    compileFile = args[i];
+                    break;
+                case "-optimize":
+                    optimize = true;
+                    break;
+                case "-optimize-output":
+                    i++;
+                    optimizeFile = args[i];
+                    break;
+                case "-cache":
+                    i++;
+                    cacheDirectory = args[i];
+                    break;
+                case "-no-cache":
+                    cacheDirectory = "";
+                    break;
                 case "-tape":
                     i++;
                     tapeFile = args[i];
+                    tapeFiles.add(args[i]);
+                    break;
+                case "-trace":
+                    i++;
+                    traceFile = args[i];
+                    break;
+                case "-trace-every":
+                    i++;
+                    traceEvery = Long.parseLong(args[i]);
+                    break;
+                case "-trace-range":
+                    traceFrom = Long.parseLong(args[++i]);
+                    traceTo = Long.parseLong(args[++i]);
+                    break;
+                case "-profile":
+                    profile = true;
+                    break;
+                case "-profile-json":
+                    i++;
+                    profileFile = args[i];
+                    break;
+                case "-dump":
+                    i++;
+                    dumpFile = args[i];
+                    dumpFiles.add(args[i]);
+                    break;
+                case "-engine":
+                    i++;
+                    engine = TuringMachine.engine.valueOf(args[i].toUpperCase());
+                    break;
+                case "-block-size":
+                    i++;
+                    blockSize = Integer.parseInt(args[i]);
+                    break;
+                case "-max-steps":
+                    i++;
+                    maxSteps = Long.parseLong(args[i]);
+                    break;
+                case "-max-cells":
+                    i++;
+                    maxCells = Long.parseLong(args[i]);
+                    break;
+                case "-max-configs":
+                    i++;
+                    maxConfigs = Long.parseLong(args[i]);
+                    break;
+                case "-timeout":
+                    i++;
+                    timeout = Long.parseLong(args[i]);
+                    break;
+                case "-detect-loops":
+                    detectLoops = true;
+                    break;
+                case "-checkpoint":
+                    i++;
+                    checkpointFile = args[i];
+                    break;
+                case "-checkpoint-every":
+                    i++;
+                    checkpointEvery = Long.parseLong(args[i]);
+                    break;
+                case "-resume":
+                    i++;
+                    resumeFile = args[i];
+                    break;
+                case "-ntm":
+                    nondeterministic = true;
+                    break;
+                case "-search":
+                    searchStates = Integer.parseInt(args[++i]);
+                    searchSymbols = Integer.parseInt(args[++i]);
+                    break;
+                case "-batch":
+                    i++;
+                    batchFile = args[i];
+                    break;
+                case "-output":
+                    i++;
+                    outputFile = args[i];
+                    break;
+                case "-threads":
+                    i++;
+                    threads = Integer.parseInt(args[i]);
+                    break;
+                case "-server":
+                    i++;
+                    serverAddress = args[i];
+                    break;
+                case "-client":
+                    i++;
+                    clientAddress = args[i];
+                    break;
+                case "-stop":
+                    stopServer = true;
                     break;
                 case "-debug":
                     debug = true;
@@ -35,25 +193,332 @@ public class Main {
             }    
         }
 
+        RunLimits limits = new RunLimits(maxSteps, maxCells, timeout, detectLoops);
+        if (nondeterministic ? maxCells != Long.MAX_VALUE : maxConfigs != Long.MAX_VALUE) {
+            // the branches of a nondeterministic run share their cells, its exploration is bounded by its configurations
+            System.err.println(help);
+            throw new IllegalArgumentException("-max-cells bounds the tape of a run, -max-configs the configurations explored with -ntm");
+        }
+
         if (debug) {
             System.out.println("Selected Options:");
             System.out.println("  ConfigPath: " + ((! configFile.isEmpty()) ? configFile : "Disable"));
-            System.out.println("    TapePath: " + ((! tapeFile.isEmpty()) ? tapeFile : "Disable"));
+            System.out.println("    TapePath: " + ((! tapeFiles.isEmpty()) ? String.join(", ", tapeFiles) : "Disable"));
+            System.out.println("   TracePath: " + ((! traceFile.isEmpty()) ? traceFile : "Disable"));
+            System.out.println("  Checkpoint: " + ((! checkpointFile.isEmpty()) ? checkpointFile + " every " + checkpointEvery + "s" : "Disable"));
+            System.out.println("  ResumePath: " + ((! resumeFile.isEmpty()) ? resumeFile : "Disable"));
+            System.out.println("       Cache: " + ((! cacheDirectory.isEmpty()) ? cacheDirectory : "Disable"));
+            System.out.println("   BatchPath: " + ((! batchFile.isEmpty()) ? batchFile : "Disable"));
+            System.out.println("      Engine: " + engine);
+            System.out.println("      Limits: " + limits);
             System.out.println("     Display: " + display);
             System.out.println("       Debug: " + debug);
             System.out.println();
         }
 
+        if (! serverAddress.isEmpty()) {
+            serve(serverAddress, threads, cacheDirectory, limits.isUnlimited() ? EmulatorServer.DEFAULT_LIMITS : limits);
+            return;
+        }
+
+        if (searchStates > 0) {
+            search(searchStates, searchSymbols, (maxSteps == Long.MAX_VALUE) ? BusyBeaverSearch.DEFAULT_STEPS : maxSteps, threads,
+                   checkpointFile, checkpointEvery * 1000, resumeFile, outputFile);
+            return;
+        }
+
+        if (! clientAddress.isEmpty() && stopServer) {
+            stopServer(clientAddress);
+            return;
+        }
+
         if (configFile.isEmpty()) {
             System.err.println(help);
             throw new IllegalArgumentException("No turing machine to emulate");
         }
         
+        if (! compileFile.isEmpty()) {
+            compile(configFile, compileFile);
+            return;
+        }
+
+        if (! optimizeFile.isEmpty()) {
+            optimize(configFile, optimizeFile);
+            return;
+        }
+
+        if (! clientAddress.isEmpty()) {
+            if (display || debug || ! traceFile.isEmpty() || profile || ! checkpointFile.isEmpty() || ! resumeFile.isEmpty()
+                || nondeterministic || ! batchFile.isEmpty() || tapeFiles.size() > 1 || hasSeveralTapes(configFile)) {
+                System.err.println(help);
+                throw new IllegalArgumentException("Only the runs of a machine on a tape are sent to the server");
+            }
+            runClient(clientAddress, configFile, tapeFile, dumpFile, engine, blockSize, limits, optimize);
+            return;
+        }
+
         try {
-            TuringMachine tm = new TuringMachine(configFile, tapeFile, display, debug);
+            if (! MachineIO.isBinary(configFile) && MachineConfig.readTapesNb(configFile) > 1) {
+                if (display || debug || ! traceFile.isEmpty() || profile || ! profileFile.isEmpty() || ! checkpointFile.isEmpty()
+                    || ! resumeFile.isEmpty() || engine != TuringMachine.engine.TABLE || optimize || detectLoops || nondeterministic
+                    || ! batchFile.isEmpty()) {
+                    System.err.println(help);
+                    throw new IllegalArgumentException("A machine with several tapes only runs with -tape, -dump and the budgets (-max-steps, -max-cells, -timeout)");
+                }
+                runMultiTape(configFile, tapeFiles, dumpFiles, limits);
+                return;
+            }
+        } catch (FileNotFoundException e) {
+            // reported when the machine is loaded
+        }
+        if (tapeFiles.size() > 1) {
+            System.err.println(help);
+            throw new IllegalArgumentException("Several tapes given for a machine with a single tape");
+        }
+
+        if (nondeterministic) {
+            runNondeterministic(configFile, tapeFile, dumpFile, threads, limits, maxConfigs);
+            return;
+        }
+
+        if (! batchFile.isEmpty()) {
+            runBatch(configFile, cacheDirectory, optimize, batchFile, outputFile, threads, limits);
+            return;
+        }
+
+        try {
+            TuringMachine tm = new TuringMachine(configFile, tapeFile, display, debug, cacheDirectory);
+            tm.setEngine(engine, blockSize);
+            tm.setLimits(limits);
+            tm.setTrace(traceFile, traceEvery, traceFrom, traceTo);
+            tm.setProfile(profile, profileFile);
+            tm.setCheckpoint(checkpointFile, checkpointEvery * 1000);
+            if (optimize)
+                tm.optimize();
+            if (! resumeFile.isEmpty())
+                tm.resume(resumeFile);
             tm.execute();
-            System.out.println("The Turing machine ended in state: s" + tm.getFinalState());
-            System.out.println("The input is " + (tm.getAccepted() ? "accepted":"rejected"));
+            if (tm.getTermination() == MachineRun.termination.ACCEPTED || tm.getTermination() == MachineRun.termination.HALTED) {
+                System.out.println("The Turing machine ended in state: s" + tm.getFinalState());
+                System.out.println("The input is " + (tm.getAccepted() ? "accepted":"rejected"));
+            } else {
+                System.out.println("The Turing machine was stopped in state: s" + tm.getFinalState() + " after " + tm.getSteps() + " steps");
+                System.out.println("The run did not halt: " + tm.getTermination());
+            }
+            if (! dumpFile.isEmpty()) {
+                TapeIO.save(dumpFile, tm.getRun().getTape());
+                System.out.println("Final tape written to: " + dumpFile);
+            }
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void compile(String configFile, String compileFile) {
+        // parse the machine and write its tables, a .tmc file is loaded without parsing
+        try {
+            MachineIO.saveBinary(compileFile, MachineIO.load(configFile, ""));
+            System.out.println("Compiled machine written to: " + compileFile);
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void optimize(String configFile, String optimizeFile) {
+        // write the machine without its unreachable and duplicated states, it keeps the symbols of its tapes
+        try {
+            CompiledMachine machine = MachineIO.load(configFile, "");
+            CompiledMachine optimized = MachineOptimizer.optimize(machine);
+            MachineIO.saveText(optimizeFile, optimized);
+            System.out.println("Optimized machine (" + machine.statesNb + " -> " + optimized.statesNb + " states) written to: "
+                               + optimizeFile);
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void search(int states, int symbols, long maxSteps, int threads, String checkpointFile, long checkpointEvery,
+                               String resumeFile, String outputFile) {
+        // the champions are printed as they are found, then the counts and the best machine
+        try {
+            BusyBeaverSearch search = new BusyBeaverSearch(states, symbols, maxSteps, threads, System.out);
+            search.setCheckpoint(checkpointFile, checkpointEvery);
+            if (! resumeFile.isEmpty())
+                search.resume(resumeFile);
+            search.run();
+
+            System.out.println("Search of the " + states + " states, " + symbols + " symbols machines (" + maxSteps + " steps each):");
+            System.out.println("     Halting: " + search.getHalting());
+            System.out.println(" Non-halting: " + search.getNonHalting());
+            System.out.println("   Undecided: " + search.getUndecided());
+            if (search.getBestMachine() != null) {
+                System.out.println("        Best: " + search.getBestSteps() + " steps: " + search.getBest());
+                if (! outputFile.isEmpty()) {
+                    MachineIO.saveText(outputFile, search.getBestMachine());
+                    System.out.println("Best machine written to: " + outputFile);
+                }
+            }
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void serve(String serverAddress, int threads, String cacheDirectory, RunLimits limits) {
+        // run until a client sends STOP, every run is stopped by the budgets of the server
+        try {
+            new EmulatorServer(serverAddress, threads, cacheDirectory, limits).serve();
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean hasSeveralTapes(String configFile) {
+        try {
+            return ! MachineIO.isBinary(configFile) && MachineConfig.readTapesNb(configFile) > 1;
+        } catch (FileNotFoundException e) {
+            return false; // reported by the server
+        }
+    }
+
+    private static void stopServer(String clientAddress) {
+        try {
+            EmulatorClient client = new EmulatorClient(clientAddress);
+            client.stopServer();
+            client.close();
+            System.out.println("Server stopped: " + clientAddress);
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void runClient(String clientAddress, String configFile, String tapeFile, String dumpFile,
+                                  TuringMachine.engine engine, int blockSize, RunLimits limits, boolean optimize) {
+        // same run and same output as without a server, the files are read and written by the server
+        try {
+            EmulatorClient client = new EmulatorClient(clientAddress);
+            String[] result = client.run(client.loadMachine(configFile, optimize), tapeFile, dumpFile, engine, blockSize, limits);
+            MachineRun.termination termination = MachineRun.termination.valueOf(result[0]);
+
+            client.close();
+            if (termination == MachineRun.termination.ACCEPTED || termination == MachineRun.termination.HALTED) {
+                System.out.println("The Turing machine ended in state: s" + result[1]);
+                System.out.println("The input is " + ((termination == MachineRun.termination.ACCEPTED) ? "accepted":"rejected"));
+            } else {
+                System.out.println("The Turing machine was stopped in state: s" + result[1] + " after " + result[2] + " steps");
+                System.out.println("The run did not halt: " + termination);
+            }
+            if (! dumpFile.isEmpty())
+                System.out.println("Final tape written to: " + dumpFile);
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void runMultiTape(String configFile, List<String> tapeFiles, List<String> dumpFiles, RunLimits limits) {
+        // run a machine with several tapes, the i-th tape is loaded from the i-th -tape file
+        try {
+            MultiTapeMachine machine = MultiTapeMachine.load(configFile);
+            MultiTapeRun run = new MultiTapeRun(machine);
+
+            if (tapeFiles.size() > machine.getTapesNb() || dumpFiles.size() > machine.getTapesNb())
+                throw new IllegalArgumentException("The machine has " + machine.getTapesNb() + " tapes");
+            for (int t = 0; t < tapeFiles.size(); t++)
+                run.loadTape(t, tapeFiles.get(t));
+
+            run.execute(limits);
+            if (run.getTermination() == MachineRun.termination.ACCEPTED || run.getTermination() == MachineRun.termination.HALTED) {
+                System.out.println("The Turing machine ended in state: s" + run.getFinalState());
+                System.out.println("The input is " + (run.getAccepted() ? "accepted":"rejected"));
+            } else {
+                System.out.println("The Turing machine was stopped in state: s" + run.getFinalState() + " after " + run.getSteps() + " steps");
+                System.out.println("The run did not halt: " + run.getTermination());
+            }
+            for (int t = 0; t < dumpFiles.size(); t++) {
+                TapeIO.save(dumpFiles.get(t), run.getTape(t));
+                System.out.println("Final tape " + (t + 1) + " written to: " + dumpFiles.get(t));
+            }
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void runNondeterministic(String configFile, String tapeFile, String dumpFile, int threads,
+                                            RunLimits limits, long maxConfigs) {
+        // explore the branches of the machine until one of them accepts
+        try {
+            NondeterministicMachine machine = NondeterministicMachine.load(configFile);
+            NondeterministicRun run = new NondeterministicRun(machine, threads, limits, maxConfigs);
+            Tape tape = new Tape();
+
+            // the cells before the head are created, then the tape is loaded on them (as MachineRun does)
+            for (int o = 0; o <= machine.getTapeOffset(); o++)
+                tape.append(0);
+            if (! tapeFile.isEmpty())
+                TapeIO.load(tapeFile, tape);
+
+            run.execute(tape);
+            if (run.getAccepted()) {
+                System.out.println("The Turing machine ended in state: s" + run.getFinalState() + " after " + run.getSteps() + " steps");
+                System.out.println("The input is accepted");
+            } else if (run.getTermination() == MachineRun.termination.HALTED) {
+                System.out.println("No branch reached an accepting state, " + run.getVisited() + " configurations explored");
+                System.out.println("The input is rejected");
+            } else {
+                System.out.println("The exploration was stopped after " + run.getSteps() + " steps, " + run.getVisited() + " configurations explored");
+                System.out.println("The run did not halt: " + run.getTermination());
+            }
+            if (! dumpFile.isEmpty() && run.getAccepted()) {
+                TapeIO.save(dumpFile, run.getFinalTape());
+                System.out.println("Final tape written to: " + dumpFile);
+            }
+        } catch (Exception e){
+            System.out.println();
+            System.out.println(e.getMessage());
+            System.out.println();
+            e.printStackTrace();
+        }
+    }
+
+    private static void runBatch(String configFile, String cacheDirectory, boolean optimize, String batchFile, String outputFile, int threads,
+                                 RunLimits limits) {
+        // parse the machine once and run it on every tape of the batch
+        try {
+            CompiledMachine machine = MachineIO.load(configFile, cacheDirectory);
+            if (optimize)
+                machine = MachineOptimizer.optimize(machine);
+            List<String> tapes = BatchRunner.listTapes(batchFile);
+            Writer out = new BufferedWriter(outputFile.isEmpty() ? new OutputStreamWriter(System.out)
+                                                                 : new FileWriter(outputFile));
+
+            new BatchRunner(machine, threads, limits).run(tapes, out, outputFile.endsWith(".jsonl"));
+            if (! outputFile.isEmpty()) {
+                out.close();
+                System.out.println("Ran " + tapes.size() + " tapes, results written to: " + outputFile);
+            }
         } catch (Exception e){
             System.out.println();
             System.out.println(e.getMessage());
@@ -0,0 +1,149 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+public class MultiTapeMachine {
+    /* transition tables of a machine with several tapes
+       the symbols read on the k tapes are packed in one number, read 1 + symbolsNb * (read 2 + symbolsNb * ...),
+       where symbolsNb is one more than the largest symbol read by a transition, and the key of a transition is
+       statesNb * packed + state, like the key of a single tape machine
+       small key spaces are indexed by a dense table, larger ones by an open addressing table on the keys
+       transition i writes write[i * k + t] and moves by move[i * k + t] on the tape t */
+
+    private static final int MAX_DENSE = 1 << 22; // largest key space indexed by a dense table
+
+    final int statesNb; // number of states, used to compute the keys
+    final int tapesNb; // number of tapes (k)
+    final int symbolsNb; // base of the packed symbols, a symbol read outside [0, symbolsNb) has no transition
+    final int[] nextState; // transition -> next state of the machine
+    final int[] write; // transition * k + tape -> value to write on the tape
+    final int[] move; // transition * k + tape -> +1 for RIGHT, -1 for LEFT, 0 for STAY
+    private final int[] dense; // key -> transition, -1 if there is none (null if the key space is too large)
+    private final long[] keys; // open addressing table: key of the transition in the slot
+    private final int[] slots; // open addressing table: transition + 1 (0 for an empty slot)
+    private final boolean[] accepting; // state -> is the state accepting
+    private final int tapeOffset; // initial position of the reading heads
+
+    public MultiTapeMachine(MachineConfig config) throws InvalidConfigFileException {
+        ArrayList<int[]> transitions = config.getMultiTransitions();
+        int k = config.getTapesNb(), maxAccepting = -1, maxRead = 0, size = 0;
+        long keySpace;
+
+        if (k < 2)
+            throw new InvalidConfigFileException("The machine has a single tape, it is run by MachineRun");
+        for (int[] row : transitions)
+            for (int t = 0; t < k; t++)
+                maxRead = Math.max(maxRead, row[1 + t]);
+        for (int state : config.getStatesAccepting())
+            maxAccepting = Math.max(maxAccepting, state);
+
+        this.statesNb = config.getStatesNb();
+        this.tapesNb = k;
+        this.symbolsNb = maxRead + 1;
+        this.tapeOffset = config.getTapeOffset();
+        this.accepting = new boolean[maxAccepting + 1];
+        for (int state : config.getStatesAccepting())
+            if (state >= 0)
+                this.accepting[state] = true;
+
+        // number of keys, the packed symbols must fit in a long
+        keySpace = this.statesNb;
+        for (int t = 0; t < k; t++) {
+            if (keySpace > Long.MAX_VALUE / this.symbolsNb)
+                throw new InvalidConfigFileException("Too many tapes and symbols: the symbols read can't be packed in a key");
+            keySpace *= this.symbolsNb;
+        }
+
+        this.nextState = new int[transitions.size()];
+        this.write = new int[transitions.size() * k];
+        this.move = new int[transitions.size() * k];
+        if (keySpace <= MAX_DENSE) {
+            this.dense = new int[(int) keySpace];
+            Arrays.fill(this.dense, -1);
+            this.keys = null;
+            this.slots = null;
+        } else {
+            int capacity = Integer.highestOneBit(Math.max(transitions.size(), 1) * 4);
+            this.dense = null;
+            this.keys = new long[capacity];
+            this.slots = new int[capacity];
+        }
+
+        // a (state, symbols) couple given several times keeps its last transition
+        for (int[] row : transitions) {
+            long packed = 0;
+            for (int t = k - 1; t >= 0; t--)
+                packed = packed * this.symbolsNb + row[1 + t];
+            long key = packed * this.statesNb + row[0];
+            int i = this.find(key);
+
+            if (i < 0) {
+                i = size++;
+                this.insert(key, i);
+            }
+            this.nextState[i] = row[1 + k];
+            for (int t = 0; t < k; t++) {
+                this.write[i * k + t] = row[2 + k + t];
+                this.move[i * k + t] = row[2 + 2 * k + t];
+            }
+        }
+    }
+
+    public static MultiTapeMachine load(String configPath) throws FileNotFoundException, InvalidConfigFileException {
+        Scanner configReader = new Scanner(new File(configPath));
+        try {
+            return new MultiTapeMachine(MachineConfig.parse(configReader));
+        } finally {
+            configReader.close();
+        }
+    }
+
+    public int getStatesNb() {
+        return this.statesNb;
+    }
+
+    public int getTapesNb() {
+        return this.tapesNb;
+    }
+
+    public int getTapeOffset() {
+        return this.tapeOffset;
+    }
+
+    public boolean isAccepting(int state) {
+        return state >= 0 && state < this.accepting.length && this.accepting[state];
+    }
+
+    int find(long key) {
+        // transition of the key, -1 if there is none
+        if (this.dense != null)
+            return (key >= 0 && key < this.dense.length) ? this.dense[(int) key] : -1;
+
+        int mask = this.slots.length - 1, slot = hash(key) & mask;
+        while (this.slots[slot] != 0) {
+            if (this.keys[slot] == key)
+                return this.slots[slot] - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long key, int i) {
+        if (this.dense != null) {
+            this.dense[(int) key] = i;
+            return;
+        }
+
+        int mask = this.slots.length - 1, slot = hash(key) & mask;
+        while (this.slots[slot] != 0) slot = (slot + 1) & mask;
+        this.keys[slot] = key;
+        this.slots[slot] = i + 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
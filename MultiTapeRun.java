@@ -0,0 +1,151 @@
+import java.io.FileNotFoundException;
+
+public class MultiTapeRun {
+    /* one execution of a machine with several tapes: its tapes, reading heads and current state
+       every tape starts like the tape of a single tape machine, the head on the tape offset */
+
+    private MultiTapeMachine machine;
+
+    private Tape[] tapes; // tapes of the machine, infinite in both directions
+    private int[] heads; // current index of the reading head of every tape
+    private int currentState;
+    private long steps; // number of transitions applied by the execution
+
+    private boolean ran, accepted;
+    private MachineRun.termination stop; // reason of the end of the run
+
+    public MultiTapeRun(MultiTapeMachine machine) {
+        this.machine = machine;
+        this.tapes = new Tape[machine.getTapesNb()];
+        this.heads = new int[machine.getTapesNb()];
+        this.currentState = 0;
+        this.steps = 0;
+
+        // offset the position of the heads on the tapes, the cells before them are created
+        for (int t = 0; t < this.tapes.length; t++) {
+            this.tapes[t] = new Tape();
+            this.heads[t] = machine.getTapeOffset();
+            for (int o = 0; o <= this.heads[t]; o++)
+                this.tapes[t].append(0);
+        }
+    }
+
+    public Tape getTape(int tape) {
+        return this.tapes[tape];
+    }
+
+    public int getFinalState() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its final state");
+        return this.currentState;
+    }
+
+    public boolean getAccepted() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its accepting state");
+        return this.accepted;
+    }
+
+    public long getSteps() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its number of steps");
+        return this.steps;
+    }
+
+    public MachineRun.termination getTermination() throws TuringMachineException {
+        if (!this.ran)
+            throw new TuringMachineException("Try runnig the turing machine before accessing its termination");
+        return this.stop;
+    }
+
+    public void loadTape(int tape, String tapePath) throws FileNotFoundException, InvalidTapeFileException {
+        // load the initial content of a tape, the format is given by the extension (see TapeIO)
+        TapeIO.load(tapePath, this.tapes[tape]);
+    }
+
+    public void execute() {
+        this.runSteps(Long.MAX_VALUE);
+        this.finish();
+    }
+
+    public void execute(RunLimits limits) {
+        // same execution as execute, stopped when a budget of the limits is exceeded (loops are not detected)
+        if (limits.isUnlimited()) {
+            this.execute();
+            return;
+        }
+
+        long deadline = (limits.getTimeoutMillis() > 0) ? System.nanoTime() + limits.getTimeoutMillis() * 1_000_000 : 0;
+        long cells;
+
+        while (!this.runSteps(Math.max(Math.min(MachineRun.CHUNK_STEPS, limits.getMaxSteps() - this.steps), 0))) {
+            cells = 0;
+            for (Tape tape : this.tapes)
+                cells += (long) tape.getNegativesSize() + tape.getPositivesSize();
+
+            if (this.steps >= limits.getMaxSteps())
+                this.stop = MachineRun.termination.STEP_LIMIT;
+            else if (cells > limits.getMaxCells())
+                this.stop = MachineRun.termination.CELL_LIMIT;
+            else if (deadline != 0 && System.nanoTime() - deadline > 0)
+                this.stop = MachineRun.termination.TIME_LIMIT;
+            else
+                continue;
+
+            this.ran = true;
+            this.accepted = false;
+            return;
+        }
+        this.finish();
+    }
+
+    private void finish() {
+        this.ran = true;
+        this.accepted = this.machine.isAccepting(this.currentState);
+        this.stop = this.accepted ? MachineRun.termination.ACCEPTED : MachineRun.termination.HALTED;
+    }
+
+    boolean runSteps(long maxSteps) {
+        // apply at most maxSteps transitions, return true if the machine halted
+        // the symbols under the heads are packed in the key as they are read, nothing is allocated per step
+        final MultiTapeMachine machine = this.machine;
+        final int statesNb = machine.statesNb, symbolsNb = machine.symbolsNb, k = this.tapes.length;
+        final int[] nextState = machine.nextState;
+        final int[] write = machine.write;
+        final int[] move = machine.move;
+        final Tape[] tapes = this.tapes;
+        final int[] heads = this.heads;
+        int state = this.currentState, transition, read, t;
+        long steps = this.steps, last = (maxSteps > Long.MAX_VALUE - steps) ? Long.MAX_VALUE : steps + maxSteps;
+        long packed;
+
+        while (true) {
+            packed = 0;
+            for (t = k - 1; t >= 0; t--) {
+                read = tapes[t].read(heads[t]);
+                if (read < 0 || read >= symbolsNb)
+                    break;
+                packed = packed * symbolsNb + read;
+            }
+            // a symbol no transition reads halts the machine
+            transition = (t < 0) ? machine.find(packed * statesNb + state) : -1;
+            if (transition < 0) {
+                this.currentState = state;
+                this.steps = steps;
+                return true;
+            }
+            if (steps == last) {
+                this.currentState = state;
+                this.steps = steps;
+                return false;
+            }
+
+            state = nextState[transition];
+            for (t = 0; t < k; t++) {
+                tapes[t].write(heads[t], write[transition * k + t]);
+                heads[t] += move[transition * k + t];
+            }
+            steps++;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+public class NondeterministicMachine {
+    /* transition tables of a machine whose (state, read) couples may have several transitions
+       the transitions of the key k are stored at the indexes first[k] to first[k + 1] - 1 of the tables,
+       in the order of the configuration file; like in CompiledMachine the keys far from the others (or
+       negative) are not indexed by first but by the sorted sparseKeys, their transitions come after the
+       others; like CompiledMachine the tables are shared between threads */
+
+    final int statesNb; // number of state, used to compute the keys
+    final int[] first; // key -> index of its first transition in the tables (size of the dense keys + 1)
+    final int[] sparseKeys; // keys outside first, sorted
+    final int[] sparseFirst; // sparse key -> index of its first transition in the tables (sparse keys + 1)
+    final int[] nextState; // transition -> next state of the machine
+    final int[] write; // transition -> value to write on the tape
+    final int[] move; // transition -> +1 for RIGHT, -1 for LEFT, 0 for STAY
+    private final boolean[] accepting; // state -> is the state accepting
+    private final int tapeOffset; // initial position of the reading head
+
+    public NondeterministicMachine(MachineConfig config) {
+        ArrayList<Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>>> transitions = config.getTransitions();
+        int size = 0, maxAccepting = -1, sparseNb = 0, key;
+        long denseKeys = Math.max(CompiledMachine.DENSE_KEYS, (long) CompiledMachine.DENSE_RATIO * transitions.size());
+        int[] next, sparseNext, sparse = new int[transitions.size()];
+
+        for (Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>> t : transitions) {
+            if (t.getFirst() >= 0 && t.getFirst() < denseKeys) size = Math.max(size, t.getFirst() + 1);
+            else sparse[sparseNb++] = t.getFirst();
+        }
+        sparse = Arrays.stream(sparse, 0, sparseNb).sorted().distinct().toArray();
+        for (int state : config.getStatesAccepting())
+            maxAccepting = Math.max(maxAccepting, state);
+
+        this.statesNb = config.getStatesNb();
+        this.first = new int[size + 1];
+        this.sparseKeys = sparse;
+        this.sparseFirst = new int[sparse.length + 1];
+        this.nextState = new int[transitions.size()];
+        this.write = new int[transitions.size()];
+        this.move = new int[transitions.size()];
+        this.accepting = new boolean[maxAccepting + 1];
+        this.tapeOffset = config.getTapeOffset();
+
+        // count the transitions of every key, then place them after the ones of the previous keys
+        for (Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>> t : transitions) {
+            if (t.getFirst() >= 0 && t.getFirst() < size) this.first[t.getFirst() + 1]++;
+            else this.sparseFirst[Arrays.binarySearch(sparse, t.getFirst()) + 1]++;
+        }
+        for (key = 0; key < size; key++)
+            this.first[key + 1] += this.first[key];
+        this.sparseFirst[0] = this.first[size];
+        for (int slot = 0; slot < sparse.length; slot++)
+            this.sparseFirst[slot + 1] += this.sparseFirst[slot];
+        next = this.first.clone();
+        sparseNext = this.sparseFirst.clone();
+        for (Pair<Integer, Triplet<Integer, Integer, TuringMachine.direction>> t : transitions) {
+            int i = (t.getFirst() >= 0 && t.getFirst() < size) ? next[t.getFirst()]++
+                                                               : sparseNext[Arrays.binarySearch(sparse, t.getFirst())]++;
+            this.nextState[i] = t.getSecond().getFirst();
+            this.write[i] = t.getSecond().getSecond();
+            this.move[i] = CompiledMachine.move(t.getSecond().getThird());
+        }
+
+        for (int state : config.getStatesAccepting())
+            if (state >= 0)
+                this.accepting[state] = true;
+    }
+
+    public static NondeterministicMachine load(String configPath) throws FileNotFoundException, InvalidConfigFileException {
+        Scanner configReader = new Scanner(new File(configPath));
+        try {
+            MachineConfig config = MachineConfig.parse(configReader);
+            if (config.getTapesNb() != 1)
+                throw new InvalidConfigFileException("Nondeterministic machines have a single tape");
+            return new NondeterministicMachine(config);
+        } finally {
+            configReader.close();
+        }
+    }
+
+    public int getStatesNb() {
+        return this.statesNb;
+    }
+
+    public int getTapeOffset() {
+        return this.tapeOffset;
+    }
+
+    public int key(int state, int read) {
+        // key of the transitions for the (state, read) couple
+        return this.statesNb * read + state;
+    }
+
+    public int firstTransition(int key) {
+        // the transitions of the key are firstTransition(key) to lastTransition(key) - 1, none if the key is unknown
+        if (key >= 0 && key < this.first.length - 1)
+            return this.first[key];
+        int slot = Arrays.binarySearch(this.sparseKeys, key);
+        return (slot >= 0) ? this.sparseFirst[slot] : 0;
+    }
+
+    public int lastTransition(int key) {
+        if (key >= 0 && key < this.first.length - 1)
+            return this.first[key + 1];
+        int slot = Arrays.binarySearch(this.sparseKeys, key);
+        return (slot >= 0) ? this.sparseFirst[slot + 1] : 0;
+    }
+
+    public boolean isAccepting(int state) {
+        return state >= 0 && state < this.accepting.length && this.accepting[state];
+    }
+}
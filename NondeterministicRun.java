@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class NondeterministicRun {
+    /* breadth-first exploration of the configurations of a nondeterministic machine
+       the configurations at depth n (after n steps) are expanded in parallel on a fork-join pool, whose
+       threads steal the parts of the level left by the others, to give the configurations at depth n + 1
+       the branches share their tapes (see PersistentTape) and a configuration already reached by another
+       branch is dropped (the set of visited configurations is concurrent), so every configuration is
+       expanded once; the position of the head is not part of a configuration, a machine behaves the same
+       way on a translated tape
+       the exploration stops as soon as a branch reaches an accepting state, it rejects the input when
+       every branch has halted (or loops on configurations already visited) */
+
+    private static final class Branch {
+        final int state, index; // state of the machine and position of the head
+        final PersistentTape tape;
+
+        Branch(int state, int index, PersistentTape tape) {
+            this.state = state;
+            this.index = index;
+            this.tape = tape;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Branch && ((Branch) other).state == this.state
+                    && ((Branch) other).tape.equals(this.tape);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.tape.hashCode() * 31 + this.state;
+        }
+    }
+
+    private NondeterministicMachine machine;
+    private int parallelism; // number of threads expanding a level
+    private RunLimits limits; // the step budget bounds the depth of the exploration, the cells are not bounded
+    private long maxConfigs; // number of configurations reached after which the exploration stops
+
+    private Branch accepted; // branch which reached an accepting state, null if none did
+    private long steps; // depth of the exploration
+    private long visited; // number of distinct configurations reached
+    private MachineRun.termination stop; // reason of the end of the exploration
+
+    public NondeterministicRun(NondeterministicMachine machine, int parallelism, RunLimits limits, long maxConfigs) {
+        this.machine = machine;
+        this.parallelism = parallelism;
+        this.limits = limits;
+        this.maxConfigs = maxConfigs;
+    }
+
+    public boolean getAccepted() throws TuringMachineException {
+        this.checkRan();
+        return this.accepted != null;
+    }
+
+    public int getFinalState() throws TuringMachineException {
+        // state of the accepting branch
+        this.checkRan();
+        if (this.accepted == null)
+            throw new TuringMachineException("No branch of the nondeterministic run reached an accepting state");
+        return this.accepted.state;
+    }
+
+    public Tape getFinalTape() throws TuringMachineException {
+        // tape of the accepting branch
+        Tape tape = new Tape();
+        this.getFinalState();
+        this.accepted.tape.materialize(tape, this.accepted.index);
+        return tape;
+    }
+
+    public long getSteps() throws TuringMachineException {
+        this.checkRan();
+        return this.steps;
+    }
+
+    public long getVisited() throws TuringMachineException {
+        this.checkRan();
+        return this.visited;
+    }
+
+    public MachineRun.termination getTermination() throws TuringMachineException {
+        this.checkRan();
+        return this.stop;
+    }
+
+    public void execute(Tape tape) throws InterruptedException {
+        // explore the configurations reachable from the head at the tape offset, in state 0, on the tape
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        Set<Branch> visited = ConcurrentHashMap.newKeySet();
+        AtomicReference<Branch> accepted = new AtomicReference<>();
+        long deadline = (this.limits.getTimeoutMillis() > 0) ? System.nanoTime() + this.limits.getTimeoutMillis() * 1_000_000 : 0;
+        Branch initial = new Branch(0, this.machine.getTapeOffset(), PersistentTape.of(tape, this.machine.getTapeOffset()));
+        List<Branch> level = new ArrayList<>();
+
+        level.add(initial);
+        visited.add(initial);
+        if (this.machine.isAccepting(initial.state))
+            accepted.set(initial);
+
+        this.steps = 0;
+        this.stop = null;
+        try {
+            while (accepted.get() == null) {
+                if (level.isEmpty()) {
+                    this.stop = MachineRun.termination.HALTED;
+                    break;
+                } else if (this.steps >= this.limits.getMaxSteps()) {
+                    this.stop = MachineRun.termination.STEP_LIMIT;
+                    break;
+                } else if (visited.size() > this.maxConfigs) {
+                    this.stop = MachineRun.termination.CONFIG_LIMIT;
+                    break;
+                } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                    this.stop = MachineRun.termination.TIME_LIMIT;
+                    break;
+                }
+
+                final List<Branch> current = level;
+                level = pool.submit(() -> current.parallelStream()
+                                                 .flatMap(b -> this.successors(b, visited, accepted))
+                                                 .collect(Collectors.toList())).get();
+                this.steps++;
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        this.accepted = accepted.get();
+        if (this.accepted != null)
+            this.stop = MachineRun.termination.ACCEPTED;
+        this.visited = visited.size();
+    }
+
+    private Stream<Branch> successors(Branch branch, Set<Branch> visited, AtomicReference<Branch> accepted) {
+        // configurations reached in one step which were not visited yet, none once a branch accepted
+        final NondeterministicMachine machine = this.machine;
+        int key = machine.key(branch.state, branch.tape.read());
+        int last = machine.lastTransition(key);
+        List<Branch> next = new ArrayList<>(last - machine.firstTransition(key));
+
+        for (int t = machine.firstTransition(key); t < last && accepted.get() == null; t++) {
+            Branch b = new Branch(machine.nextState[t], branch.index + machine.move[t],
+                                  branch.tape.step(machine.write[t], machine.move[t]));
+            if (!visited.add(b))
+                continue;
+            if (machine.isAccepting(b.state))
+                accepted.compareAndSet(null, b);
+            next.add(b);
+        }
+        return next.stream();
+    }
+
+    private void checkRan() throws TuringMachineException {
+        if (this.stop == null)
+            throw new TuringMachineException("Try runnig the nondeterministic machine before accessing its result");
+    }
+}
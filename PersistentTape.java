@@ -0,0 +1,99 @@
+public final class PersistentTape {
+    /* immutable tape used by the branches of a nondeterministic run
+       the tape is a zipper: the cell under the head and two linked lists of cells, going left and right from
+       the head; a step builds a new tape sharing the lists of its parent, so a branch costs two objects per
+       step whatever the size of its tape
+       the blanks at the far end of a list are not stored, so two tapes with the same cells around the head
+       have the same lists (equals and hashCode compare the cells, not the position of the head) */
+
+    private static final class Cells {
+        final int value; // cell next to the head (or to the previous cell)
+        final Cells next; // cells further from the head, null when they are all blank
+        final int hash;
+
+        Cells(int value, Cells next) {
+            this.value = value;
+            this.next = next;
+            this.hash = 31 * ((next == null) ? 0 : next.hash) + value;
+        }
+    }
+
+    private final Cells left, right; // cells on the left and on the right of the head
+    private final int cell; // cell under the head
+
+    private PersistentTape(Cells left, int cell, Cells right) {
+        this.left = left;
+        this.cell = cell;
+        this.right = right;
+    }
+
+    public static PersistentTape of(Tape tape, int index) {
+        // tape with the cells of a mutable tape, the head on index
+        Cells left = null, right = null;
+
+        for (int i = -tape.getNegativesSize(); i < index; i++)
+            left = push(tape.peek(i), left);
+        for (int i = tape.getPositivesSize() - 1; i > index; i--)
+            right = push(tape.peek(i), right);
+        return new PersistentTape(left, tape.peek(index), right);
+    }
+
+    public int read() {
+        return this.cell;
+    }
+
+    public PersistentTape step(int toWrite, int move) {
+        // write the cell under the head then move the head by one cell (+1 for RIGHT, -1 for LEFT, 0 for STAY)
+        if (move == 0)
+            return new PersistentTape(this.left, toWrite, this.right);
+        if (move > 0)
+            return new PersistentTape(push(toWrite, this.left), (this.right == null) ? 0 : this.right.value,
+                                      (this.right == null) ? null : this.right.next);
+        return new PersistentTape((this.left == null) ? null : this.left.next, (this.left == null) ? 0 : this.left.value,
+                                  push(toWrite, this.right));
+    }
+
+    public void materialize(Tape tape, int index) {
+        // write the cells on a blank mutable tape, the head being on index
+        int i = index - 1;
+        for (Cells c = this.left; c != null; c = c.next, i--) {
+            tape.extend(-Math.min(i, 0), i + 1);
+            tape.write(i, c.value);
+        }
+        tape.extend(-Math.min(index, 0), index + 1);
+        tape.write(index, this.cell);
+        i = index + 1;
+        for (Cells c = this.right; c != null; c = c.next, i++) {
+            tape.extend(-Math.min(i, 0), i + 1);
+            tape.write(i, c.value);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof PersistentTape)) return false;
+        PersistentTape tape = (PersistentTape) other;
+        return this.cell == tape.cell && same(this.left, tape.left) && same(this.right, tape.right);
+    }
+
+    @Override
+    public int hashCode() {
+        int l = (this.left == null) ? 0 : this.left.hash, r = (this.right == null) ? 0 : this.right.hash;
+        return (l * 31 + this.cell) * 0x9E3779B1 + r;
+    }
+
+    private static Cells push(int value, Cells next) {
+        // a blank pushed on blanks is not stored, so the lists stay canonical
+        return (value == 0 && next == null) ? null : new Cells(value, next);
+    }
+
+    private static boolean same(Cells a, Cells b) {
+        // the lists of two branches often share their end, which stops the comparison early
+        while (a != b) {
+            if (a == null || b == null || a.hash != b.hash || a.value != b.value) return false;
+            a = a.next;
+            b = b.next;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+public interface ProfilerMXBean {
+    /* live view of a profiled run, registered on the platform MBean server (see ProfilingEngine)
+       the values are published by the running thread every ProfilingEngine.PUBLISH_STEPS steps */
+
+    long getSteps();
+
+    double getStepsPerSecond(); // rate between the two last publications, the same for every client
+
+    int getCurrentState();
+
+    int getHeadMin();
+
+    int getHeadMax();
+
+    long getGrowthEvents();
+
+    boolean isRunning();
+}
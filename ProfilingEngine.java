@@ -0,0 +1,339 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class ProfilingEngine implements ChunkedEngine, ProfilerMXBean {
+    /* table execution counting what the machine does
+       every step increments the counter of its transition and of the state it leaves, and
+       keeps the extent of the head; a step reaching a cell never visited is a growth event, and the growth
+       events which made the tape reallocate its arrays are counted apart
+       the counters are primitive arrays, so the cost is a few increments per step; while the run goes on the
+       steps are published every PUBLISH_STEPS steps to the MBean TuringMachine:type=Profiler, and the
+       counters are summarized by report() and toJson() once the run is over
+       the engine runs by chunks (see ChunkedEngine), so the budgets of the run apply to a profiled run */
+
+    static final int PUBLISH_STEPS = 1 << 16; // steps between two updates of the values seen through JMX
+    private static final String MBEAN_NAME = "TuringMachine:type=Profiler";
+    private static final int REPORT_TRANSITIONS = 10; // transitions listed by the text report
+
+    private CompiledMachine machine;
+
+    private long[] transitionCounts; // transition -> number of times it was applied, the dense keys of the machine
+                                     // then its sparse transitions (see CompiledMachine)
+    private long[] stateVisits; // state -> number of steps leaving the state (+1 for the final state)
+    private int headMin, headMax; // extent of the head during the run
+    private long growthEvents; // steps which created a cell
+    private long reallocations; // growth events which reallocated the arrays of the tape
+    private long startNanos, elapsedNanos;
+
+    // published for JMX by the running thread, the counters above are only read by it
+    private volatile long publishedSteps;
+    private volatile int publishedState;
+    private volatile int publishedHeadMin, publishedHeadMax;
+    private volatile long publishedGrowthEvents;
+    private volatile double stepsPerSecond; // rate between the two last publications
+    private volatile boolean running;
+    private long sampleSteps, sampleNanos; // last publication, owned by the running thread
+
+    private boolean started; // the first chunk was run
+    private long steps, initialSteps;
+    private int finalState;
+
+    public ProfilingEngine(CompiledMachine machine) {
+        int maxState = 0;
+
+        this.machine = machine;
+        for (int key = 0; key < machine.nextState.length; key++)
+            maxState = Math.max(maxState, machine.nextState[key]);
+        for (int state : machine.sparseNextState)
+            maxState = Math.max(maxState, state);
+        this.transitionCounts = new long[machine.nextState.length + machine.sparseKeys.length];
+        this.stateVisits = new long[Math.min(maxState, Math.max(machine.statesNb - 1, 0)) + 1]; // not the states beyond state_number
+        this.started = false;
+    }
+
+    @Override
+    public boolean runSteps(MachineRun run, long maxSteps) {
+        // the counters go on from one chunk to the next, the clock starts with the first one
+        final int statesNb = this.machine.statesNb;
+        final int[] nextState = this.machine.nextState;
+        final int[] write = this.machine.write;
+        final int[] move = this.machine.move;
+        final int size = nextState.length;
+        final long[] transitionCounts = this.transitionCounts;
+        final long[] stateVisits = this.stateVisits;
+        final Tape tape = run.getTape();
+        int state = run.getCurrentState(), index = run.getCurrentIndex(), key, slot, toState, toWrite, toMove;
+        long steps = run.getCurrentSteps(), last = (maxSteps > Long.MAX_VALUE - steps) ? Long.MAX_VALUE : steps + maxSteps;
+
+        if (!this.started) {
+            this.started = true;
+            this.initialSteps = steps;
+            this.headMin = index;
+            this.headMax = index;
+            this.running = true;
+            this.sampleSteps = steps; // no rate before the first publication
+            this.publish(steps, state, index, index, 0);
+            this.register(); // before the clock starts, creating the MBean server takes a while
+            this.startNanos = System.nanoTime();
+            this.sampleNanos = this.startNanos;
+        }
+
+        int headMin = this.headMin, headMax = this.headMax;
+        long growthEvents = this.growthEvents, reallocations = this.reallocations;
+        long publish = steps + PUBLISH_STEPS - (steps - this.initialSteps) % PUBLISH_STEPS;
+
+        try {
+            key = statesNb * tape.read(index) + state;
+            while (true) {
+                if (key >= 0 && key < size && nextState[key] != CompiledMachine.UNDEFINED) {
+                    toState = nextState[key];
+                    toWrite = write[key];
+                    toMove = move[key];
+                } else if ((slot = this.machine.sparseSlot(key)) >= 0) {
+                    toState = this.machine.sparseNextState[slot];
+                    toWrite = this.machine.sparseWrite[slot];
+                    toMove = this.machine.sparseMove[slot];
+                    key = size + slot; // counter of the sparse transition
+                } else {
+                    break;
+                }
+                if (steps == last)
+                    return false;
+                transitionCounts[key]++;
+                if (state >= 0 && state < stateVisits.length) stateVisits[state]++;
+
+                state = toState;
+                tape.write(index, toWrite);
+                index += toMove;
+                steps++;
+
+                if (index > headMax || index < headMin) {
+                    // a cell is only created when the head goes further than it ever went
+                    if (index > headMax) headMax = index;
+                    else headMin = index;
+                    if (index >= tape.getPositivesSize() || -index > tape.getNegativesSize()) {
+                        growthEvents++;
+                        if (tape.reallocates(index)) reallocations++;
+                    }
+                }
+                key = statesNb * tape.read(index) + state;
+
+                if (steps == publish) {
+                    this.publish(steps, state, headMin, headMax, growthEvents);
+                    publish += PUBLISH_STEPS;
+                }
+            }
+            if (state >= 0 && state < stateVisits.length) stateVisits[state]++; // the state the machine halted in
+            return true;
+        } finally {
+            this.elapsedNanos = System.nanoTime() - this.startNanos;
+            this.steps = steps;
+            this.finalState = state;
+            this.headMin = headMin;
+            this.headMax = headMax;
+            this.growthEvents = growthEvents;
+            this.reallocations = reallocations;
+            this.publish(steps, state, headMin, headMax, growthEvents);
+            run.moveTo(state, index, steps);
+        }
+    }
+
+    private void publish(long steps, int state, int headMin, int headMax, long growthEvents) {
+        // called by the running thread, the rate is sampled here so every JMX client sees the same one
+        long now = System.nanoTime();
+
+        if (now - this.sampleNanos > 0 && steps != this.sampleSteps) {
+            this.stepsPerSecond = (steps - this.sampleSteps) * 1e9 / (now - this.sampleNanos);
+            this.sampleSteps = steps;
+            this.sampleNanos = now;
+        }
+        this.publishedSteps = steps;
+        this.publishedState = state;
+        this.publishedHeadMin = headMin;
+        this.publishedHeadMax = headMax;
+        this.publishedGrowthEvents = growthEvents;
+    }
+
+    @Override
+    public void stopped(MachineRun run) {
+        this.running = false;
+    }
+
+    @Override
+    public long getSteps() {
+        return this.publishedSteps;
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return this.stepsPerSecond;
+    }
+
+    @Override
+    public int getCurrentState() {
+        return this.publishedState;
+    }
+
+    @Override
+    public int getHeadMin() {
+        return this.publishedHeadMin;
+    }
+
+    @Override
+    public int getHeadMax() {
+        return this.publishedHeadMax;
+    }
+
+    @Override
+    public long getGrowthEvents() {
+        return this.publishedGrowthEvents;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    public long getTransitionCount(int key) {
+        int slot = this.machine.sparseSlot(key);
+        if (slot >= 0)
+            return this.transitionCounts[this.machine.nextState.length + slot];
+        return (key >= 0 && key < this.machine.nextState.length) ? this.transitionCounts[key] : 0;
+    }
+
+    public long getStateVisits(int state) {
+        return (state >= 0 && state < this.stateVisits.length) ? this.stateVisits[state] : 0;
+    }
+
+    public long getReallocations() {
+        return this.reallocations;
+    }
+
+    public String report() {
+        // summary of the run: rates, extent of the head, hottest states and transitions
+        StringBuilder sb = new StringBuilder();
+        long steps = this.steps - this.initialSteps;
+        List<Integer> keys = this.hottestTransitions();
+
+        sb.append("Profile:\n");
+        sb.append(String.format("        Steps: %d in %.3f s (%.0f steps/s)\n", steps, this.elapsedNanos / 1e9,
+                                (this.elapsedNanos == 0) ? 0.0 : steps * 1e9 / this.elapsedNanos));
+        sb.append(String.format("         Head: from %d to %d\n", this.headMin, this.headMax));
+        sb.append(String.format("  Tape growth: %d cells created, %d reallocations\n", this.growthEvents, this.reallocations));
+        sb.append("       States:  state  |  visits  |  share\n");
+        for (int state = 0; state < this.stateVisits.length; state++)
+            if (this.stateVisits[state] > 0)
+                sb.append(String.format("               %5d  |  %d  |  %.1f%%\n", state, this.stateVisits[state],
+                                        100.0 * this.stateVisits[state] / Math.max(1, steps + 1)));
+        sb.append("  Transitions:  ( state ; read ) => ( nextState ; write ; move )  |  count\n");
+        for (int i = 0; i < Math.min(REPORT_TRANSITIONS, keys.size()); i++) {
+            int t = keys.get(i), key = this.keyOf(t);
+            sb.append(String.format("               ( %d ; %d ) => ( %d ; %d ; %s )  |  %d\n", this.stateOf(key),
+                                    this.readOf(key), this.table(t, this.machine.nextState, this.machine.sparseNextState),
+                                    this.table(t, this.machine.write, this.machine.sparseWrite),
+                                    direction(this.table(t, this.machine.move, this.machine.sparseMove)),
+                                    this.transitionCounts[t]));
+        }
+        if (keys.size() > REPORT_TRANSITIONS)
+            sb.append("               ... " + (keys.size() - REPORT_TRANSITIONS) + " other transitions applied\n");
+        return sb.toString();
+    }
+
+    public String toJson() {
+        // every counter, for the tools reading the profile
+        StringBuilder sb = new StringBuilder("{");
+        long steps = this.steps - this.initialSteps;
+
+        sb.append("\"steps\":" + steps);
+        sb.append(",\"elapsed_ns\":" + this.elapsedNanos);
+        sb.append(",\"steps_per_second\":" + ((this.elapsedNanos == 0) ? 0 : (long) (steps * 1e9 / this.elapsedNanos)));
+        sb.append(",\"final_state\":" + this.finalState);
+        sb.append(",\"head_min\":" + this.headMin);
+        sb.append(",\"head_max\":" + this.headMax);
+        sb.append(",\"growth_events\":" + this.growthEvents);
+        sb.append(",\"reallocations\":" + this.reallocations);
+        sb.append(",\"states\":[");
+        boolean first = true;
+        for (int state = 0; state < this.stateVisits.length; state++) {
+            if (this.stateVisits[state] == 0) continue;
+            sb.append(first ? "" : ",").append("{\"state\":" + state + ",\"visits\":" + this.stateVisits[state] + "}");
+            first = false;
+        }
+        sb.append("],\"transitions\":[");
+        first = true;
+        for (int t : this.hottestTransitions()) {
+            int key = this.keyOf(t);
+            sb.append(first ? "" : ",");
+            sb.append("{\"key\":" + key + ",\"state\":" + this.stateOf(key) + ",\"read\":" + this.readOf(key));
+            sb.append(",\"next_state\":" + this.table(t, this.machine.nextState, this.machine.sparseNextState));
+            sb.append(",\"write\":" + this.table(t, this.machine.write, this.machine.sparseWrite));
+            sb.append(",\"move\":\"" + direction(this.table(t, this.machine.move, this.machine.sparseMove)));
+            sb.append("\",\"count\":" + this.transitionCounts[t] + "}");
+            first = false;
+        }
+        return sb.append("]}").toString();
+    }
+
+    public void writeJson(String path) throws IOException {
+        Writer out = new FileWriter(path);
+        try {
+            out.write(this.toJson());
+            out.write("\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private List<Integer> hottestTransitions() {
+        // transitions applied at least once, most applied first
+        List<Integer> transitions = new ArrayList<>();
+        for (int t = 0; t < this.transitionCounts.length; t++)
+            if (this.transitionCounts[t] > 0)
+                transitions.add(t);
+        transitions.sort((a, b) -> Long.compare(this.transitionCounts[b], this.transitionCounts[a]));
+        return transitions;
+    }
+
+    private int keyOf(int t) {
+        int size = this.machine.nextState.length;
+        return (t < size) ? t : this.machine.sparseKeys[t - size];
+    }
+
+    private int table(int t, int[] dense, int[] sparse) {
+        // value of the transition t in a table of the machine
+        return (t < dense.length) ? dense[t] : sparse[t - dense.length];
+    }
+
+    private int stateOf(int key) {
+        // a key is statesNb * read + state, with the state below statesNb
+        return (this.machine.statesNb > 0) ? Math.floorMod(key, this.machine.statesNb) : key;
+    }
+
+    private int readOf(int key) {
+        return (this.machine.statesNb > 0) ? Math.floorDiv(key, this.machine.statesNb) : 0;
+    }
+
+    private static String direction(int move) {
+        return (move > 0) ? "RIGHT" : (move < 0) ? "LEFT" : "STAY";
+    }
+
+    private void register() {
+        // only one profiled run is seen through JMX, the last one started, it stays visible once over
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            // the run is profiled anyway, only the live view is missing
+        }
+    }
+}
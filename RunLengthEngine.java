@@ -0,0 +1,52 @@
+public class RunLengthEngine implements ExecutionEngine {
+    /* execution on a run length encoded tape
+       a transition which keeps the state and rewrites the symbol it reads moves the head over the whole
+       run of this symbol, so it is applied to the run at once, counting one step per cell crossed */
+
+    private CompiledMachine machine;
+    private int maxRunsNb; // largest number of runs held by the tape during the last execution
+
+    public RunLengthEngine(CompiledMachine machine) {
+        this.machine = machine;
+    }
+
+    public int getMaxRunsNb() {
+        return this.maxRunsNb;
+    }
+
+    @Override
+    public void run(MachineRun run) {
+        final int statesNb = this.machine.statesNb;
+        final int[] nextState = this.machine.nextState;
+        final int[] write = this.machine.write;
+        final int[] move = this.machine.move;
+        final int size = nextState.length;
+        final RunLengthTape tape = new RunLengthTape(run.getTape(), run.getCurrentIndex());
+        int state = run.getCurrentState(), read = tape.read(), key;
+        long steps = run.getCurrentSteps(), cells;
+
+        this.maxRunsNb = tape.getRunsNb();
+
+        key = statesNb * read + state;
+        while (key >= 0 && key < size && nextState[key] != CompiledMachine.UNDEFINED) {
+            if (nextState[key] == state && write[key] == read && move[key] != 0
+                    && (cells = tape.runLength(move[key])) > 0) {
+                // the transition applies again on every cell of the run, the head stops on the next symbol
+                tape.skip(move[key], cells);
+                steps += cells;
+            } else {
+                // an infinite run of blanks is crossed cell by cell, like the table execution does
+                state = nextState[key];
+                tape.write(write[key]);
+                tape.move(move[key]);
+                steps++;
+            }
+            this.maxRunsNb = Math.max(this.maxRunsNb, tape.getRunsNb());
+            read = tape.read();
+            key = statesNb * read + state;
+        }
+
+        run.moveTo(state, tape.getIndex(), steps);
+        run.setRunLengthTape(tape);
+    }
+}
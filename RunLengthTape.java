@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+public class RunLengthTape {
+    /* tape stored as runs of (symbol, length) around the reading head
+       the runs on each side of the head are kept in a stack, the nearest run on top, and adjacent runs
+       of a stack always hold different symbols; beyond the stacks the tape is blank (0)
+       memory grows with the number of runs instead of the number of cells */
+
+    private int current; // symbol of the cell under the head
+    private int index; // position of the head
+
+    private int[] leftSymbols, rightSymbols; // runs on the left (resp. right) of the head, nearest at the top
+    private long[] leftLengths, rightLengths;
+    private int leftTop, rightTop; // number of runs in each stack
+
+    private int minIndex, maxIndex; // extent of the cells visited by the head
+
+    public RunLengthTape(Tape tape, int index) {
+        // copy the cells of a tape, with the head at index
+        this.leftSymbols = new int[16];
+        this.leftLengths = new long[16];
+        this.rightSymbols = new int[16];
+        this.rightLengths = new long[16];
+        this.leftTop = 0;
+        this.rightTop = 0;
+        this.index = index;
+        this.minIndex = index;
+        this.maxIndex = index;
+
+        // the farthest runs are pushed first
+        for (int i = tape.getPositivesSize() - 1; i > index; i--)
+            this.pushRight(tape.read(i), 1);
+        for (int i = -tape.getNegativesSize(); i < index; i++)
+            this.pushLeft(tape.read(i), 1);
+        this.current = tape.read(index);
+    }
+
+    public int read() {
+        return this.current;
+    }
+
+    public void write(int toWrite) {
+        this.current = toWrite;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public int getRunsNb() {
+        // number of runs stored, the cell under the head not included
+        return this.leftTop + this.rightTop;
+    }
+
+    public void move(int direction) {
+        // move the head by one cell, +1 for RIGHT and -1 for LEFT, 0 keeps the head on its cell
+        if (direction == 0) {
+            return;
+        } else if (direction > 0) {
+            this.pushLeft(this.current, 1);
+            this.current = this.popRight();
+            this.index++;
+            if (this.index > this.maxIndex) this.maxIndex = this.index;
+        } else {
+            this.pushRight(this.current, 1);
+            this.current = this.popLeft();
+            this.index--;
+            if (this.index < this.minIndex) this.minIndex = this.index;
+        }
+    }
+
+    public long runLength(int direction) {
+        // number of cells holding the current symbol from the head (included) to the next different symbol
+        // in the given direction, -1 if the run is infinite (blanks up to the end of the tape)
+        int top = (direction > 0) ? this.rightTop : this.leftTop;
+        int[] symbols = (direction > 0) ? this.rightSymbols : this.leftSymbols;
+        long[] lengths = (direction > 0) ? this.rightLengths : this.leftLengths;
+
+        if (top == 0)
+            return (this.current == 0) ? -1 : 1;
+        if (symbols[top - 1] != this.current)
+            return 1;
+        if (top == 1 && this.current == 0)
+            return -1;
+        return 1 + lengths[top - 1];
+    }
+
+    public void skip(int direction, long cells) {
+        // move the head over a run of cells holding the current symbol, cells is given by runLength
+        int symbol = this.current;
+
+        if (direction > 0) {
+            if (cells > 1) this.rightTop--; // the whole run on the right is crossed
+            this.pushLeft(symbol, cells);
+            this.current = this.popRight();
+            this.index += (int) cells;
+            if (this.index > this.maxIndex) this.maxIndex = this.index;
+        } else {
+            if (cells > 1) this.leftTop--;
+            this.pushRight(symbol, cells);
+            this.current = this.popLeft();
+            this.index -= (int) cells;
+            if (this.index < this.minIndex) this.minIndex = this.index;
+        }
+    }
+
+    public void materialize(Tape tape) {
+        // write the runs on a tape covering its previous cells and all the cells visited by the head
+        int negativesSize = Math.max(tape.getNegativesSize(), -this.minIndex);
+        int positivesSize = Math.max(tape.getPositivesSize(), this.maxIndex + 1);
+        long p;
+
+        tape.clear();
+        tape.extend(negativesSize, positivesSize);
+
+        tape.write(this.index, this.current);
+        p = this.index;
+        for (int r = this.leftTop - 1; r >= 0 && p > -negativesSize; r--)
+            for (long l = 0; l < this.leftLengths[r] && --p >= -negativesSize; l++)
+                tape.write((int) p, this.leftSymbols[r]);
+        p = this.index;
+        for (int r = this.rightTop - 1; r >= 0 && p < positivesSize - 1; r--)
+            for (long l = 0; l < this.rightLengths[r] && ++p < positivesSize; l++)
+                tape.write((int) p, this.rightSymbols[r]);
+    }
+
+    private void pushLeft(int symbol, long length) {
+        if (this.leftTop > 0 && this.leftSymbols[this.leftTop - 1] == symbol) {
+            this.leftLengths[this.leftTop - 1] += length;
+            return;
+        }
+        if (this.leftTop == this.leftSymbols.length) {
+            this.leftSymbols = Arrays.copyOf(this.leftSymbols, this.leftTop * 2);
+            this.leftLengths = Arrays.copyOf(this.leftLengths, this.leftTop * 2);
+        }
+        this.leftSymbols[this.leftTop] = symbol;
+        this.leftLengths[this.leftTop++] = length;
+    }
+
+    private void pushRight(int symbol, long length) {
+        if (this.rightTop > 0 && this.rightSymbols[this.rightTop - 1] == symbol) {
+            this.rightLengths[this.rightTop - 1] += length;
+            return;
+        }
+        if (this.rightTop == this.rightSymbols.length) {
+            this.rightSymbols = Arrays.copyOf(this.rightSymbols, this.rightTop * 2);
+            this.rightLengths = Arrays.copyOf(this.rightLengths, this.rightTop * 2);
+        }
+        this.rightSymbols[this.rightTop] = symbol;
+        this.rightLengths[this.rightTop++] = length;
+    }
+
+    private int popLeft() {
+        // take the nearest cell of the left stack, a blank if it is empty
+        if (this.leftTop == 0) return 0;
+        int symbol = this.leftSymbols[this.leftTop - 1];
+        if (--this.leftLengths[this.leftTop - 1] == 0) this.leftTop--;
+        return symbol;
+    }
+
+    private int popRight() {
+        if (this.rightTop == 0) return 0;
+        int symbol = this.rightSymbols[this.rightTop - 1];
+        if (--this.rightLengths[this.rightTop - 1] == 0) this.rightTop--;
+        return symbol;
+    }
+}
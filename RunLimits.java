@@ -0,0 +1,47 @@
+public class RunLimits {
+    /* budgets of a run: a run exceeding one of them is stopped before halting
+       the step budget is exact, the tape and time budgets are checked every MachineRun.CHUNK_STEPS steps */
+
+    public static final RunLimits NONE = new RunLimits(Long.MAX_VALUE, Long.MAX_VALUE, 0, false);
+
+    private long maxSteps; // number of transitions applied at most
+    private long maxCells; // number of tape cells (visited or loaded) at most
+    private long timeoutMillis; // wall-clock time of the run at most, 0 for no limit
+    private boolean detectLoops; // stop the runs detected as non-halting (see LoopDetector)
+
+    public RunLimits(long maxSteps, long maxCells, long timeoutMillis, boolean detectLoops) {
+        this.maxSteps = maxSteps;
+        this.maxCells = maxCells;
+        this.timeoutMillis = timeoutMillis;
+        this.detectLoops = detectLoops;
+    }
+
+    public long getMaxSteps() {
+        return this.maxSteps;
+    }
+
+    public long getMaxCells() {
+        return this.maxCells;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    public boolean detectsLoops() {
+        return this.detectLoops;
+    }
+
+    public boolean isUnlimited() {
+        return this.maxSteps == Long.MAX_VALUE && this.maxCells == Long.MAX_VALUE && this.timeoutMillis <= 0
+                && !this.detectLoops;
+    }
+
+    @Override
+    public String toString() {
+        return "( steps: " + ((this.maxSteps == Long.MAX_VALUE) ? "-" : this.maxSteps)
+             + " ; cells: " + ((this.maxCells == Long.MAX_VALUE) ? "-" : this.maxCells)
+             + " ; timeout: " + ((this.timeoutMillis <= 0) ? "-" : this.timeoutMillis + "ms")
+             + " ; loops: " + this.detectLoops + " )";
+    }
+}
@@ -0,0 +1,12 @@
+public interface RunMXBean {
+    /* live view of all the runs of the JVM, registered on the platform MBean server (see RunMonitor)
+       the steps are published by the running threads between two chunks of MachineRun.CHUNK_STEPS steps */
+
+    long getSteps(); // steps applied by all the runs since the start of the JVM
+
+    double getStepsPerSecond(); // rate of all the runs over the last second, the same for every client
+
+    int getRunning(); // runs executing
+
+    long getRuns(); // runs over
+}
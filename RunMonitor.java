@@ -0,0 +1,101 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class RunMonitor implements RunMXBean {
+    /* always on live view of the runs, seen through JMX as TuringMachine:type=Runs
+       the runs on the transition tables (MachineRun.execute, with budgets, checkpoints, trace or profile too)
+       publish their steps between two chunks, an addition every MachineRun.CHUNK_STEPS steps, so does the JIT
+       engine under budgets; the BLOCK, RLE and JIT engines publish theirs once they are over, the machines with
+       several tapes and the nondeterministic machines are not seen
+       the MBean is registered by a background thread when a run first goes past a chunk, so the short runs
+       never pay for the creation of the MBean server
+       the counters of a single run (states, transitions, head) are given by the ProfilingEngine */
+
+    static final RunMonitor INSTANCE = new RunMonitor();
+
+    private static final String MBEAN_NAME = "TuringMachine:type=Runs";
+    private static final long SAMPLE_NANOS = 1_000_000_000L; // time between two samples of the rate
+
+    private LongAdder steps;
+    private LongAdder runs;
+    private AtomicInteger running;
+    private AtomicBoolean registered;
+    private volatile double stepsPerSecond;
+    private volatile long sampleNanos; // time of the last sample of the rate
+    private long sampleSteps; // steps at the last sample, guarded by this
+
+    private RunMonitor() {
+        this.steps = new LongAdder();
+        this.runs = new LongAdder();
+        this.running = new AtomicInteger();
+        this.registered = new AtomicBoolean(false);
+        this.stepsPerSecond = 0;
+        this.sampleNanos = System.nanoTime();
+        this.sampleSteps = 0;
+    }
+
+    void started() {
+        this.running.incrementAndGet();
+    }
+
+    void ran(long steps) {
+        // called by a running thread between two chunks with the steps of the chunk
+        long now = System.nanoTime();
+
+        this.steps.add(steps);
+        if (now - this.sampleNanos >= SAMPLE_NANOS) {
+            synchronized (this) {
+                if (now - this.sampleNanos >= SAMPLE_NANOS) {
+                    long total = this.steps.sum();
+                    this.stepsPerSecond = (total - this.sampleSteps) * 1e9 / (now - this.sampleNanos);
+                    this.sampleSteps = total;
+                    this.sampleNanos = now;
+                }
+            }
+        }
+        if (!this.registered.get() && this.registered.compareAndSet(false, true)) {
+            Thread t = new Thread(this::register, "run-monitor-registration");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    void ended(long steps) {
+        // called once the run is over with the steps not published yet
+        this.steps.add(steps);
+        this.runs.increment();
+        this.running.decrementAndGet();
+    }
+
+    @Override
+    public long getSteps() {
+        return this.steps.sum();
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return (this.running.get() > 0) ? this.stepsPerSecond : 0;
+    }
+
+    @Override
+    public int getRunning() {
+        return this.running.get();
+    }
+
+    @Override
+    public long getRuns() {
+        return this.runs.sum();
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            // the runs go on, only the live view is missing
+        }
+    }
+}
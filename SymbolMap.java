@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+public class SymbolMap {
+    /* dense renumbering of the symbols of a machine: the symbols it reads or writes become 0, 1, 2, ... (the
+       blank 0 staying 0), so the keys statesNb * read + state of its tables have no hole
+       the remapped machine runs on an encoded tape: the cells are translated before the run and back after it
+       a symbol of the tape the machine does not know becomes the code `foreign`, no transition reads it so the
+       machine halts on it without writing it, and its original value is put back when the tape is decoded */
+
+    private int[] toNew; // old symbol -> new symbol, -1 for a symbol the machine does not know
+    private int[] toOld; // new symbol -> old symbol
+    private int foreign; // code of the symbols the machine does not know
+    private CompiledMachine machine; // machine using the new symbols
+
+    private SymbolMap(int[] toNew, int[] toOld, CompiledMachine machine) {
+        this.toNew = toNew;
+        this.toOld = toOld;
+        this.foreign = toOld.length;
+        this.machine = this.remap(machine);
+    }
+
+    public static SymbolMap of(CompiledMachine machine) {
+        // null when the symbols are already dense (or when a negative symbol is written, it has no dense code,
+        // or when the machine has sparse keys, its symbols are too far apart to be indexed)
+        final int statesNb = machine.statesNb;
+        boolean[] used;
+        int maxSymbol = 0, symbolsNb = 0;
+        int[] toNew, toOld;
+
+        if (statesNb <= 0 || machine.hasSparseTransitions())
+            return null;
+        for (int key = 0; key < machine.nextState.length; key++) {
+            if (!machine.hasTransition(key)) continue;
+            if (machine.write[key] < 0)
+                return null;
+            maxSymbol = Math.max(maxSymbol, Math.max(key / statesNb, machine.write[key]));
+        }
+
+        used = new boolean[maxSymbol + 1];
+        used[0] = true;
+        for (int key = 0; key < machine.nextState.length; key++) {
+            if (!machine.hasTransition(key)) continue;
+            used[key / statesNb] = true;
+            used[machine.write[key]] = true;
+        }
+
+        toNew = new int[maxSymbol + 1];
+        toOld = new int[maxSymbol + 1];
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            toNew[symbol] = used[symbol] ? symbolsNb : -1;
+            if (used[symbol])
+                toOld[symbolsNb++] = symbol;
+        }
+        if (symbolsNb == maxSymbol + 1)
+            return null;
+
+        return new SymbolMap(toNew, Arrays.copyOf(toOld, symbolsNb), machine);
+    }
+
+    public CompiledMachine getMachine() {
+        return this.machine;
+    }
+
+    public int getSymbolsNb() {
+        return this.toOld.length;
+    }
+
+    private CompiledMachine remap(CompiledMachine machine) {
+        final int statesNb = machine.statesNb;
+        int size = 0;
+
+        for (int key = 0; key < machine.nextState.length; key++)
+            if (machine.hasTransition(key))
+                size = Math.max(size, statesNb * this.toNew[key / statesNb] + key % statesNb + 1);
+
+        int[] nextState = new int[size], write = new int[size], move = new int[size];
+        Arrays.fill(nextState, CompiledMachine.UNDEFINED);
+        for (int key = 0; key < machine.nextState.length; key++) {
+            if (!machine.hasTransition(key)) continue;
+            int newKey = statesNb * this.toNew[key / statesNb] + key % statesNb;
+            nextState[newKey] = machine.nextState[key];
+            write[newKey] = this.toNew[machine.write[key]];
+            move[newKey] = machine.move[key];
+        }
+
+        return new CompiledMachine(statesNb, nextState, write, move, machine.getAcceptingStates(), machine.getTapeOffset());
+    }
+
+    public int[] encode(Tape tape) {
+        // translate the existing cells to the new symbols, return the (index, symbol) couples of the foreign cells
+        int[] foreign = new int[16];
+        int foreignNb = 0;
+
+        for (int index = -tape.getNegativesSize(); index < tape.getPositivesSize(); index++) {
+            int symbol = tape.peek(index);
+            if (symbol >= 0 && symbol < this.toNew.length && this.toNew[symbol] >= 0) {
+                tape.write(index, this.toNew[symbol]);
+                continue;
+            }
+            if (foreignNb + 2 > foreign.length)
+                foreign = Arrays.copyOf(foreign, 2 * foreign.length);
+            foreign[foreignNb++] = index;
+            foreign[foreignNb++] = symbol;
+            tape.write(index, this.foreign);
+        }
+        return Arrays.copyOf(foreign, foreignNb);
+    }
+
+    public void decode(Tape tape, int[] foreign) {
+        // translate the cells back to the old symbols, the foreign cells were never written by the machine
+        for (int index = -tape.getNegativesSize(); index < tape.getPositivesSize(); index++) {
+            int symbol = tape.peek(index);
+            if (symbol >= 0 && symbol < this.toOld.length)
+                tape.write(index, this.toOld[symbol]);
+        }
+        for (int i = 0; i < foreign.length; i += 2)
+            tape.write(foreign[i], foreign[i + 1]);
+    }
+}
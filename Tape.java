@@ -0,0 +1,122 @@
+import java.util.Arrays;
+
+public class Tape {
+    /* infinite tape backed by two growable int arrays, 0 is the blank symbol */
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] positives; // cells for the positive indexes (include 0)
+    private int[] negatives; // cells for the negative indexes (exclude 0), cell -i is stored at i-1
+
+    private int positivesSize; // number of positive cells visited or written so far
+    private int negativesSize; // number of negative cells visited or written so far
+
+    public Tape() {
+        this.positives = new int[INITIAL_CAPACITY];
+        this.negatives = new int[INITIAL_CAPACITY];
+        this.positivesSize = 0;
+        this.negativesSize = 0;
+    }
+
+    public int read(int index) {
+        // if the cell does not exist yet it is created, as the head only moves by one
+        // cell per iteration this only grows the tape by one cell
+        if (index >= 0) {
+            if (index >= this.positivesSize) {
+                this.ensurePositives(index + 1);
+                this.positivesSize = index + 1;
+            }
+            return this.positives[index];
+        } else {
+            if (-index > this.negativesSize) {
+                this.ensureNegatives(-index);
+                this.negativesSize = -index;
+            }
+            return this.negatives[-index - 1]; // account for 0 on positive tape and change of sign
+        }
+    }
+
+    public int peek(int index) {
+        // read a cell without creating it, a cell never visited is blank
+        if (index >= 0)
+            return (index < this.positivesSize) ? this.positives[index] : 0;
+        return (-index <= this.negativesSize) ? this.negatives[-index - 1] : 0;
+    }
+
+    public void write(int index, int toWrite) {
+        // can't write before read so the cell must exist
+        if (index >= 0) {
+            this.positives[index] = toWrite;
+        } else {
+            this.negatives[-index - 1] = toWrite;
+        }
+    }
+
+    public void setCells(int from, int[] cells, int offset, int length) {
+        // write length cells starting at index from, the cells must exist
+        int i = from, k = offset, end = offset + length;
+        for (; i < 0 && k < end; i++, k++)
+            this.negatives[-i - 1] = cells[k];
+        if (k < end)
+            System.arraycopy(cells, k, this.positives, i, end - k);
+    }
+
+    public void getCells(int from, int[] cells, int offset, int length) {
+        // read length existing cells starting at index from
+        int i = from, k = offset, end = offset + length;
+        for (; i < 0 && k < end; i++, k++)
+            cells[k] = this.negatives[-i - 1];
+        if (k < end)
+            System.arraycopy(this.positives, i, cells, k, end - k);
+    }
+
+    public void clear() {
+        // blank all the cells but keep the arrays so the tape can be reused without allocation
+        Arrays.fill(this.positives, 0, this.positivesSize, 0);
+        Arrays.fill(this.negatives, 0, this.negativesSize, 0);
+        this.positivesSize = 0;
+        this.negativesSize = 0;
+    }
+
+    public void extend(int negativesSize, int positivesSize) {
+        // create the blank cells needed to reach the given sizes
+        if (negativesSize > this.negativesSize) {
+            this.ensureNegatives(negativesSize);
+            this.negativesSize = negativesSize;
+        }
+        if (positivesSize > this.positivesSize) {
+            this.ensurePositives(positivesSize);
+            this.positivesSize = positivesSize;
+        }
+    }
+
+    public void append(int toAppend) {
+        // add a cell at the end of the positive part of the tape (used when loading a tape)
+        this.ensurePositives(this.positivesSize + 1);
+        this.positives[this.positivesSize++] = toAppend;
+    }
+
+    boolean reallocates(int index) {
+        // true if creating the cell at index reallocates an array
+        return (index >= 0) ? index >= this.positives.length : -index > this.negatives.length;
+    }
+
+    public int getPositivesSize() {
+        return this.positivesSize;
+    }
+
+    public int getNegativesSize() {
+        return this.negativesSize;
+    }
+
+    private void ensurePositives(int size) {
+        // the arrays are doubled so the amortized cost of a growth is constant
+        if (size > this.positives.length)
+            this.positives = Arrays.copyOf(this.positives, Math.max(size, this.positives.length * 2));
+    }
+
+    private void ensureNegatives(int size) {
+        if (size > this.negatives.length)
+            this.negatives = Arrays.copyOf(this.negatives, Math.max(size, this.negatives.length * 2));
+    }
+}
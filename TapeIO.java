@@ -0,0 +1,267 @@
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class TapeIO {
+    /* loading and saving of tapes without going through strings
+       - text format (.tp): /int/;/int/;...;/int/ on the first line, cell i is written at index i,
+         it is parsed as a stream of bytes so the line is never held in memory
+         the format has no index for its first cell: a tape written left of index 0 can't be saved in it
+         (its blank cells left of 0 are dropped), only in the binary format
+       - binary format (.tpb): header (magic, index of the first cell, number of cells) followed by the cells
+         as big-endian 32 bits integers, it is read and written through memory-mapped windows */
+
+    public static final String BINARY_EXTENSION = ".tpb";
+
+    private static final int MAGIC = 0x544D5450; // "TMTP"
+    private static final int HEADER_SIZE = 16; // magic (int), first index (int), number of cells (long)
+    private static final int WINDOW_CELLS = 1 << 26; // cells mapped at once (256 MB)
+    private static final int CHUNK_CELLS = 1 << 16; // cells copied at once between a window and a tape
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TapeIO() {
+    }
+
+    public static boolean isBinary(String path) {
+        return path.endsWith(BINARY_EXTENSION);
+    }
+
+    public static void load(String path, Tape tape) throws FileNotFoundException, InvalidTapeFileException {
+        // load a tape file in the format given by its extension
+        try {
+            if (isBinary(path)) {
+                loadBinary(path, tape);
+            } else {
+                InputStream in = new FileInputStream(path);
+                try {
+                    loadText(in, tape);
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path + " (No such file or directory)");
+        } catch (IOException e) {
+            throw new InvalidTapeFileException("Can't read the tape file " + path + ": " + e.getMessage());
+        }
+    }
+
+    public static void save(String path, Tape tape) throws IOException, InvalidTapeFileException {
+        // save all the cells of a tape in the format given by the extension of path
+        if (isBinary(path)) {
+            saveBinary(path, tape);
+        } else {
+            // a text tape is loaded from index 0, the cells left of it would come back shifted
+            int first = 0;
+            for (int i = -tape.getNegativesSize(); i < 0 && first == 0; i++)
+                if (tape.read(i) != 0)
+                    first = i;
+            if (first < 0)
+                throw new InvalidTapeFileException("The tape was written left of index 0 (from index " + first + "), a text tape is loaded from index 0:\n"
+                                                 + "    dump it to a " + BINARY_EXTENSION + " file, which keeps the index of its first cell");
+
+            OutputStream out = new FileOutputStream(path);
+            try {
+                saveText(out, tape, 0);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    public static void loadText(InputStream in, Tape tape) throws IOException, InvalidTapeFileException {
+        // parse the tape file to initialize the tape
+        // format expected: /int;/int/;...;/int/
+        //        cell nb :   0    1        n-1
+        // the cells already on the tape (the offset) are rewritten, the others are appended
+        // as with String.split(";"), the empty cells at the end of the line are ignored
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] token = new byte[16]; // current cell, only kept to report an error
+        int read, tokenSize = 0, i = 0, emptyCells = 0, b;
+        boolean lineRead = false, lineEnd = false;
+
+        while (!lineEnd && (read = in.read(buffer)) > 0) {
+            lineRead = true;
+            for (int k = 0; k < read && !lineEnd; k++) {
+                b = buffer[k];
+                if (b == ';' || b == '\n' || b == '\r') {
+                    lineEnd = (b != ';');
+                    if (tokenSize == 0) {
+                        if (!lineEnd) emptyCells++;
+                        continue;
+                    }
+                    if (emptyCells > 0) // an empty cell followed by a value can't be parsed
+                        throw new InvalidTapeFileException("Can't parse cell nb " + i + " : ");
+                    setCell(tape, i, parseCell(token, tokenSize, i));
+                    i++;
+                    tokenSize = 0;
+                } else {
+                    if (tokenSize == token.length)
+                        token = Arrays.copyOf(token, tokenSize * 2);
+                    token[tokenSize++] = (byte) b;
+                }
+            }
+        }
+
+        if (!lineRead)
+            throw new InvalidTapeFileException("File is empty");
+        if (tokenSize > 0) {
+            if (emptyCells > 0)
+                throw new InvalidTapeFileException("Can't parse cell nb " + i + " : ");
+            setCell(tape, i, parseCell(token, tokenSize, i));
+        } else if (i == 0 && emptyCells == 0) {
+            // an empty line holds one empty cell
+            throw new InvalidTapeFileException("Can't parse cell nb 0 : ");
+        }
+    }
+
+    public static void saveText(OutputStream out, Tape tape) throws IOException {
+        // write the cells from the first negative one to the last positive one, separated by ';'
+        // the index of the first cell is not written, the reader must know it
+        saveText(out, tape, -tape.getNegativesSize());
+    }
+
+    private static void saveText(OutputStream out, Tape tape, int first) throws IOException {
+        // write the cells from the index first to the last positive one
+        BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        byte[] digits = new byte[12];
+        int value, n;
+
+        for (int i = first; i < tape.getPositivesSize(); i++) {
+            value = tape.read(i);
+            if (value == Integer.MIN_VALUE) {
+                buffered.write(Integer.toString(value).getBytes(StandardCharsets.US_ASCII));
+            } else {
+                n = digits.length;
+                boolean negative = value < 0;
+                if (negative) value = -value;
+                do {
+                    digits[--n] = (byte) ('0' + value % 10);
+                    value /= 10;
+                } while (value > 0);
+                if (negative) digits[--n] = '-';
+                buffered.write(digits, n, digits.length - n);
+            }
+            buffered.write(';');
+        }
+        buffered.write('\n');
+        buffered.flush();
+    }
+
+    public static void loadBinary(String path, Tape tape) throws IOException, InvalidTapeFileException {
+        // the cells are copied from the mapped file to the tape, the tape is extended to hold them
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new InvalidTapeFileException("File is empty");
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC)
+                throw new InvalidTapeFileException("Not a binary tape file: " + path);
+            int first = header.getInt();
+            long count = header.getLong();
+
+            if (count < 0 || HEADER_SIZE + count * 4 != channel.size() || first + count - 1 > Integer.MAX_VALUE)
+                throw new InvalidTapeFileException("The binary tape file is truncated or corrupted: " + path);
+
+            tape.extend(Math.max(0, -first), (int) Math.max(0, first + count));
+
+            int[] chunk = new int[(int) Math.min(CHUNK_CELLS, count)];
+            for (long done = 0; done < count; ) {
+                int window = (int) Math.min(WINDOW_CELLS, count - done);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + done * 4, window * 4L);
+                IntBuffer cells = mapped.asIntBuffer();
+                while (cells.hasRemaining()) {
+                    int n = Math.min(chunk.length, cells.remaining());
+                    cells.get(chunk, 0, n);
+                    tape.setCells((int) (first + done), chunk, 0, n);
+                    done += n;
+                }
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    public static void saveBinary(String path, Tape tape) throws IOException {
+        int first = -tape.getNegativesSize();
+        long count = (long) tape.getNegativesSize() + tape.getPositivesSize();
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(first).putLong(count).flip();
+            while (header.hasRemaining())
+                channel.write(header, HEADER_SIZE - header.remaining());
+
+            int[] chunk = new int[(int) Math.min(CHUNK_CELLS, Math.max(1, count))];
+            for (long done = 0; done < count; ) {
+                int window = (int) Math.min(WINDOW_CELLS, count - done);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + done * 4, window * 4L);
+                IntBuffer cells = mapped.asIntBuffer();
+                while (cells.hasRemaining()) {
+                    int n = Math.min(chunk.length, cells.remaining());
+                    tape.getCells((int) (first + done), chunk, 0, n);
+                    cells.put(chunk, 0, n);
+                    done += n;
+                }
+                mapped.force();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void setCell(Tape tape, int i, int value) {
+        // the cells before the offset already exist
+        if (i < tape.getPositivesSize())
+            tape.write(i, value);
+        else
+            tape.append(value);
+    }
+
+    private static int parseCell(byte[] token, int size, int i) throws InvalidTapeFileException {
+        // same values as Integer.parseInt, without building a string
+        int k = 0;
+        boolean negative = false;
+        long value = 0;
+
+        if (token[0] == '-' || token[0] == '+') {
+            negative = (token[0] == '-');
+            k = 1;
+        }
+        if (k == size)
+            throw cellError(token, size, i);
+        for (; k < size; k++) {
+            if (token[k] < '0' || token[k] > '9')
+                throw cellError(token, size, i);
+            value = value * 10 + (token[k] - '0');
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw cellError(token, size, i);
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE)
+            throw cellError(token, size, i);
+        return (int) value;
+    }
+
+    private static InvalidTapeFileException cellError(byte[] token, int size, int i) {
+        return new InvalidTapeFileException("Can't parse cell nb " + i + " : "
+                + new String(token, 0, size, StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class TraceWriter {
+    /* asynchronous trace of the steps of a run
+       the running thread appends fixed-size primitive records to a ring buffer, a background thread drains
+       them to the output, either as text (same lines as the -display mode) or as binary records:
+       header "TMTR", then per step: step (long), head, state, read, write, next state (int), move (byte)
+       when the buffer is full the running thread waits for the writer, no record is lost */
+
+    public static final String BINARY_EXTENSION = ".trace";
+
+    private static final int MAGIC = 0x544D5452; // "TMTR"
+    private static final int RECORD_LONGS = 4; // step, head|state, read|write, nextState|move
+    private static final int DEFAULT_CAPACITY = 1 << 16; // records in the ring buffer
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private long[] ring;
+    private int mask; // capacity - 1, the capacity is a power of 2
+    private AtomicLong published; // records appended, written by the running thread
+    private AtomicLong consumed; // records written to the output, written by the writer thread
+    private long appended; // copy of published owned by the running thread
+
+    private DataOutputStream out;
+    private boolean binary; // binary records or text lines
+    private boolean closeOutput; // close the output stream with the trace (false for System.out)
+    private volatile boolean closed;
+    private volatile IOException failure; // error of the writer thread, reported by close
+    private Thread writer;
+
+    private byte[] line; // text line being formatted by the writer thread
+
+    public TraceWriter(OutputStream out, boolean binary, boolean closeOutput, int capacity) throws IOException {
+        int records = Integer.highestOneBit(Math.max(2, capacity - 1) * 2);
+        this.ring = new long[records * RECORD_LONGS];
+        this.mask = records - 1;
+        this.published = new AtomicLong(0);
+        this.consumed = new AtomicLong(0);
+        this.appended = 0;
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.binary = binary;
+        this.closeOutput = closeOutput;
+        this.closed = false;
+        this.failure = null;
+        this.line = new byte[192];
+
+        if (binary) this.out.writeInt(MAGIC);
+
+        this.writer = new Thread(this::drain, "trace-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static TraceWriter open(String path) throws IOException {
+        // trace to a file, binary if its name ends with BINARY_EXTENSION
+        return new TraceWriter(new FileOutputStream(path), path.endsWith(BINARY_EXTENSION), true, DEFAULT_CAPACITY);
+    }
+
+    public static TraceWriter console() throws IOException {
+        // text trace on the standard output
+        return new TraceWriter(System.out, false, false, DEFAULT_CAPACITY);
+    }
+
+    public void append(long step, int head, int state, int read, int write, int nextState, int move) {
+        // called by the running thread only
+        long a = this.appended;
+        if (a - this.consumed.get() > this.mask) this.waitForRoom(a);
+
+        int base = (int) (a & this.mask) * RECORD_LONGS;
+        this.ring[base] = step;
+        this.ring[base + 1] = ((long) head << 32) | (state & 0xFFFFFFFFL);
+        this.ring[base + 2] = ((long) read << 32) | (write & 0xFFFFFFFFL);
+        this.ring[base + 3] = ((long) nextState << 32) | (move & 0xFFFFFFFFL);
+        this.appended = a + 1;
+        this.published.lazySet(a + 1);
+    }
+
+    public void close() throws IOException {
+        // wait for all the records to be written, then flush (and close) the output
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the trace");
+        }
+        if (this.closeOutput) this.out.close();
+        else this.out.flush();
+        if (this.failure != null) throw this.failure;
+    }
+
+    private void waitForRoom(long a) {
+        int spins = 0;
+        while (a - this.consumed.get() > this.mask) {
+            if (this.failure != null || !this.writer.isAlive())
+                throw new IllegalStateException("The trace writer stopped", this.failure);
+            if (++spins < 100) Thread.onSpinWait();
+            else LockSupport.parkNanos(10_000);
+        }
+    }
+
+    private void drain() {
+        long c = 0, p;
+        try {
+            while (true) {
+                p = this.published.get();
+                if (p == c) {
+                    if (this.closed && this.published.get() == c) break;
+                    LockSupport.parkNanos(50_000);
+                    continue;
+                }
+                for (; c < p; c++) {
+                    int base = (int) (c & this.mask) * RECORD_LONGS;
+                    this.writeRecord(this.ring[base], (int) (this.ring[base + 1] >> 32), (int) this.ring[base + 1],
+                            (int) (this.ring[base + 2] >> 32), (int) this.ring[base + 2],
+                            (int) (this.ring[base + 3] >> 32), (int) this.ring[base + 3]);
+                }
+                this.consumed.lazySet(c);
+            }
+        } catch (IOException e) {
+            this.failure = e;
+        }
+    }
+
+    private void writeRecord(long step, int head, int state, int read, int write, int nextState, int move)
+            throws IOException {
+        if (this.binary) {
+            // big-endian, like DataOutputStream, but copied to the stream at once
+            int n = this.bytes(0, step, 8);
+            n = this.bytes(n, head, 4);
+            n = this.bytes(n, state, 4);
+            n = this.bytes(n, read, 4);
+            n = this.bytes(n, write, 4);
+            n = this.bytes(n, nextState, 4);
+            this.line[n++] = (byte) move;
+            this.out.write(this.line, 0, n);
+            return;
+        }
+
+        // "  %4d  |  %-+8d  |  ( state ; read ) => ( nextState ; write ; RIGHT/LEFT/STAY )\n"
+        int n = 0;
+        n = this.text(n, "  ");
+        n = this.number(n, step, 4, false, false);
+        n = this.text(n, "  |  ");
+        n = this.number(n, head, 8, true, true);
+        n = this.text(n, "  |  ( ");
+        n = this.number(n, state, 0, false, false);
+        n = this.text(n, " ; ");
+        n = this.number(n, read, 0, false, false);
+        n = this.text(n, " ) => ( ");
+        n = this.number(n, nextState, 0, false, false);
+        n = this.text(n, " ; ");
+        n = this.number(n, write, 0, false, false);
+        n = this.text(n, (move > 0) ? " ; RIGHT )\n" : (move < 0) ? " ; LEFT )\n" : " ; STAY )\n");
+        this.out.write(this.line, 0, n);
+    }
+
+    private int bytes(int n, long value, int size) {
+        for (int k = size - 1; k >= 0; k--)
+            this.line[n++] = (byte) (value >>> (8 * k));
+        return n;
+    }
+
+    private int text(int n, String s) {
+        for (int k = 0; k < s.length(); k++)
+            this.line[n++] = (byte) s.charAt(k);
+        return n;
+    }
+
+    private int number(int n, long value, int width, boolean left, boolean sign) {
+        // write value padded with spaces to width, aligned on the left or the right, with its sign if required
+        int start = n, digits = 0, k;
+        boolean negative = value < 0;
+        long v = value;
+
+        do {
+            digits++;
+            v /= 10;
+        } while (v != 0);
+        int size = digits + ((negative || sign) ? 1 : 0);
+
+        if (!left)
+            for (k = size; k < width; k++) this.line[n++] = ' ';
+        if (negative) this.line[n++] = '-';
+        else if (sign) this.line[n++] = '+';
+        v = value;
+        for (k = digits - 1; k >= 0; k--) {
+            this.line[n + k] = (byte) ('0' + Math.abs(v % 10));
+            v /= 10;
+        }
+        n += digits;
+        if (left)
+            for (k = n - start; k < width; k++) this.line[n++] = ' ';
+        return n;
+    }
+}
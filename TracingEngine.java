@@ -0,0 +1,64 @@
+public class TracingEngine implements ChunkedEngine {
+    /* table execution appending every traced step to a TraceWriter
+       the steps traced are the ones in [from, to) taken every `every` steps, the run is limited by the caller
+       (see ChunkedEngine) */
+
+    private CompiledMachine machine;
+    private TraceWriter trace;
+    private long every, from, to;
+
+    public TracingEngine(CompiledMachine machine, TraceWriter trace, long every, long from, long to) {
+        this.machine = machine;
+        this.trace = trace;
+        this.every = Math.max(1, every);
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean runSteps(MachineRun run, long maxSteps) {
+        final int statesNb = this.machine.statesNb;
+        final int[] nextState = this.machine.nextState;
+        final int[] write = this.machine.write;
+        final int[] move = this.machine.move;
+        final int size = nextState.length;
+        final Tape tape = run.getTape();
+        final TraceWriter trace = this.trace;
+        final long every = this.every, from = this.from, to = this.to;
+        int state = run.getCurrentState(), index = run.getCurrentIndex(), read, key, slot, toState, toWrite, toMove;
+        long steps = run.getCurrentSteps(), last = (maxSteps > Long.MAX_VALUE - steps) ? Long.MAX_VALUE : steps + maxSteps;
+
+        read = tape.read(index);
+        key = statesNb * read + state;
+
+        while (true) {
+            if (key >= 0 && key < size && nextState[key] != CompiledMachine.UNDEFINED) {
+                toState = nextState[key];
+                toWrite = write[key];
+                toMove = move[key];
+            } else if ((slot = this.machine.sparseSlot(key)) >= 0) {
+                toState = this.machine.sparseNextState[slot];
+                toWrite = this.machine.sparseWrite[slot];
+                toMove = this.machine.sparseMove[slot];
+            } else {
+                break;
+            }
+            if (steps == last) {
+                run.moveTo(state, index, steps);
+                return false;
+            }
+            if (steps >= from && steps < to && (every == 1 || (steps - from) % every == 0))
+                trace.append(steps, index, state, read, toWrite, toState, toMove);
+
+            state = toState;
+            tape.write(index, toWrite);
+            index += toMove;
+            read = tape.read(index);
+            key = statesNb * read + state;
+            steps++;
+        }
+
+        run.moveTo(state, index, steps);
+        return true;
+    }
+}
@@ -1,325 +1,273 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
-
-public class TuringMachine {
-
-    public static enum direction {
-        RIGHT, LEFT
-    }; // direction allowed for the moves
-
-    private int statesNb; // number of state, represent the list of state (s0 ... s_nbState-1)
-    private ArrayList<Integer> statesAccepting; // list of the final accepting state of the turring machine
-
-    private ArrayList<Integer> tapePositives; // tape for the positvite indexes (include 0)
-    private ArrayList<Integer> tapeNegatives; // tape for the negative indexes (exclude 0)
-
-    private HashMap<Integer, Triplet<Integer, Integer, direction>> transitions; // store the transitions: (state, read)
-                                                                                // -> (nextState, write, move)
-
-    private int currentState; // current state of the turring machine
-    private int currentIndex; // current index of the reading head
-
-    private boolean ran, accepted;
-    private boolean debug, display;
-
-    public int getFinalState() throws TuringMachineException {
-        if (!this.ran)
-            throw new TuringMachineException("Try runnig the turing machine before accessing its final state");
-        return this.currentState;
-    }
-
-    public boolean getAccepted() throws TuringMachineException {
-        if (!this.ran)
-            throw new TuringMachineException("Try runnig the turing machine before accessing its accepting state");
-        return this.accepted;
-    }
-
-    private Triplet<Integer, Integer, direction> readToTransition(int read) {
-        // return the transition link to the state, read couple
-        return this.transitions.get(this.statesNb * read + this.currentState);
-    }
-
-    private int tapeRead() {
-        if (this.currentIndex >= 0) {
-            // if the cell does not exist, create it
-            // as the machine read once every iteration it can't be more than 1 away form
-            // the end of the array
-            if (this.tapePositives.size() < this.currentIndex + 1)
-                this.tapePositives.add(0);
-            return this.tapePositives.get(this.currentIndex); // simply read the positive tape
-        } else {
-            // if the cell does not exist, create it
-            if (this.tapeNegatives.size() < -this.currentIndex)
-                this.tapeNegatives.add(0);
-            return this.tapeNegatives.get(-this.currentIndex - 1); // account for 0 on positive tape and change of sign
-        }
-    }
-
-    private void tapeWrite(int toWrite) {
-        // can't write before read so the cell must exist
-        if (this.currentIndex >= 0) {
-            this.tapePositives.set(this.currentIndex, toWrite);
-        } else {
-            this.tapeNegatives.set(-this.currentIndex - 1, toWrite); // account for 0 on positive tape and change of
-                                                                     // sign
-        }
-    }
-
-    private void move(direction d) {
-        if (d == direction.RIGHT) {
-            this.currentIndex++;
-        } else {
-            this.currentIndex--;
-        }
-    }
-
-    public void execute() {
-        int read, i = 0;
-        Triplet<Integer, Integer, direction> transition;
-        StringBuilder transitionDiplay;
-
-        if (this.debug || this.display) {
-            System.out.println("Execution :");
-            System.out.println("  Step  |  Tape Pos  |  Transition");
-        }
-
-        // Read the first cell to initialize the machine
-        read = this.tapeRead();
-
-        // iterate until the machine reach a state where no transition is define for the
-        // current value
-        while (this.transitions.containsKey(this.statesNb * read + this.currentState)) {
-
-            transition = this.readToTransition(read); // get the transition for the current (state, read)
-            
-            if (this.debug || this.display) {
-                // Display the transition
-                transitionDiplay = new StringBuilder("( " + this.currentState + " ; ");
-                transitionDiplay.append(read + " ) => ");
-                transitionDiplay.append(transition);
-                System.out.printf("  %4d  |  %-+8d  |  %s\n", (i++), this.currentIndex, transitionDiplay.toString());
-            }
-
-            this.currentState = transition.getFirst(); // update the state of the machine
-            this.tapeWrite(transition.getSecond()); // write on the tape
-            this.move(transition.getThird()); // move the reading head
-
-            read = this.tapeRead(); // read the new cell
-        }
-
-        if (this.debug || this.display) {
-            System.out.printf("Can't find the transition for: (state: %d ; read: %d)\n", this.currentState, read);
-            System.out.printf("Current Tape position: %d \n", this.currentIndex);
-            System.out.print(("    "));
-            for (i = -this.tapeNegatives.size(); i < this.tapePositives.size(); i++)
-                System.out.printf((i < 0) ? " %+4d " : " %-+4d ", i);
-            System.out.print("\n    ");
-            for (i = -this.tapeNegatives.size(); i < this.tapePositives.size(); i++)
-                System.out.printf((i < 0) ? " %3d  " : "  %-3d ",
-                        (i < 0) ? this.tapeNegatives.get(-i - 1) : tapePositives.get(i));
-            System.out.println();
-        }
-
-        this.ran = true;
-        this.accepted = statesAccepting.contains(this.currentState);
-        if (this.debug || this.display)
-            System.out.println("Done\n");
-    }
-
-    private void parseTape(Scanner tapeReader) throws InvalidTapeFileException {
-        // parse the tape file to initialize the machine.
-        // format expected: /int;/int/;...;/int/
-        //        cell nb :   0    1        n-1
-
-        if (!tapeReader.hasNextLine())
-            throw new InvalidTapeFileException("File is empty");
-
-        String line = tapeReader.nextLine();
-        String[] lineSplit = line.split(";");
-        int toAdd, i=0;
-
-        while (i < this.tapePositives.size() && i < lineSplit.length) {
-            // the initial position of the turing machine is offset, so we just rewrite the value
-            try {
-                toAdd = Integer.parseInt(lineSplit[i]);
-                this.tapePositives.set(i, toAdd);
-            } catch (Exception e) {
-                throw new InvalidTapeFileException("Can't parse cell nb " + i + " : " + lineSplit[i]);
-            }
-            i++;
-        }
-
-        while (i < lineSplit.length && i < lineSplit.length) {
-            // after the end of the pregenerated tape (by the offset), just append the value
-            try {
-                toAdd = Integer.parseInt(lineSplit[i]);
-                this.tapePositives.add(toAdd);
-            } catch (Exception e) {
-                throw new InvalidTapeFileException("Can't parse cell nb " + i + " : " + lineSplit[i]);
-            }
-            i++;
-        }
-    }
-
-    private void parseConfig (Scanner configReader) throws InvalidConfigFileException {
-        // Input in the turing machine the configuration file
-
-        if (! configReader.hasNextLine()) throw new InvalidConfigFileException("File is empty");
-
-        String line;
-        String[] lineSplited, initialState, finalState;
-        int params=0, i=0, is, ns, r, w;;
-        boolean intransitions = false;
-        direction d;
-
-        // read the config file while there is lines to read
-        while (configReader.hasNextLine()) {
-            line = configReader.nextLine();
-            lineSplited = line.split(":|;");
-            i++;
-
-            if (intransitions) {
-                // parse the transition lines
-                if (line.endsWith(";")) intransitions = false; // we have read all the transitions
-                
-                // read the transitions for the turing machine, format expected: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT);
-                if (! (lineSplited.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                    + "      read: " + line + "\n"
-                                                                                    + "    expect: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT)\n");
-
-                initialState = lineSplited[0].split(",");
-                if (! (initialState.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                     + "      read: " + line + "\n"
-                                                                                     + "    expect: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT)\n");
-                finalState = lineSplited[1].split(",|;");
-                if (! (finalState.length == 3)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                   + "      read: " + line + "\n"
-                                                                                   + "    expect: (/state/,/read/):(/nextState/,/write/,RIGHT/LEFT)\n");
-                
-                is = Integer.parseInt(initialState[0].substring(1,initialState[0].length()));       // remove the initial parenthesis
-                r = Integer.parseInt(initialState[1].substring(0,initialState[1].length() - 1));    // remove the final parenthesis
-                ns = Integer.parseInt(finalState[0].substring(1,finalState[0].length()));           // remove the initial parenthesis
-                w = Integer.parseInt(finalState[1]);                                                // just convert should be alright
-                d = direction.valueOf(finalState[2].substring(0,finalState[2].length() - 1));       // remove the final parenthesis
-
-                //populate the transition map
-                this.transitions.put((this.statesNb * r + is), new Triplet<>(ns, w, d));
-            } else {
-                // parse all the other lines
-            
-                if (lineSplited.length < 1) throw new InvalidConfigFileException("Line " + i + " is invalid: \n"
-                                                                                + "      read: " + line + "\n");
-                
-                switch (lineSplited[0]) {
-                    case "state_number":
-                        // expect: "state_number:/int/;"
-                        if (! (lineSplited.length == 2)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                            + "      read: " + line + "\n"
-                                                                                            + "    expect: state_number:/int/;\n");
-                        this.statesNb = Integer.parseInt(lineSplited[1]);
-                        params++;
-                        break;
-                    case "accepting_states":
-                        // expect: "accepting_states:/int/,/int/,...,/int/;"
-                        if (! (lineSplited.length == 2)) throw  new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                            + "      read: " + line + "\n"
-                                                                                            + "    expect: accepting_states:/int/,/int/,...,/int/;\n");
-                        String[] states = lineSplited[1].split(",");
-                        for (String s : states) this.statesAccepting.add(Integer.parseInt(s));
-                        params++;
-                        break;
-                    case "tape_offset":
-                        // with field is optional it will offset the position of the turing machine on the tape
-                        // check the format, expect: "tape_offset:/int/;"
-                        if (! (lineSplited.length == 2)) throw  new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                            + "      read: " + line + "\n"
-                                                                                            + "    expect: tape_offset:/int/;\n");
-                        this.currentIndex = Integer.parseInt(lineSplited[1]);
-                        for(int o=0; o <= this.currentIndex; o++) this.tapePositives.add(0);
-                        break;
-                    case "transitions":
-                        // check the format, expect: "transitions:"
-                        if (! (lineSplited.length == 1)) throw new InvalidConfigFileException("Line " + i + " is invalid:\n"
-                                                                                            + "      read: " + line + "\n"
-                                                                                            + "    expect: transitions:\n");
-                        intransitions = true; // we are ready to parse transition
-                        params++;
-                        break;
-                    default:
-                        throw new InvalidConfigFileException("Line " + i + " is invalid: Unkown argument\n"
-                                                        + "      read: " + line + "\n");
-                }
-            }
-        }
-
-        // they are 3 mandatory parameters so we check if we have parsed all of them
-        if (params != 3) throw new InvalidConfigFileException("Wrong number of parameters");
-    }
-
-    public TuringMachine(String configPath, String tapePath, boolean display, boolean debug)
-            throws FileNotFoundException, InvalidConfigFileException, InvalidTapeFileException {
-        // initialise the turing machine and configure it from the config file given
-        // give empty string if no file required
-
-        // Init
-        this.statesNb = 0;
-        this.statesAccepting = new ArrayList<>();
-        this.tapePositives = new ArrayList<>();
-        this.tapeNegatives = new ArrayList<>();
-        this.transitions = new HashMap<>();
-        this.currentState = 0;
-        this.currentIndex = 0;
-        this.debug = debug;
-        this.display = display;
-        this.ran = false;
-        this.accepted = false;
-
-        if (this.debug)
-            System.out.println("Successfully initialized");
-
-        // Parse the given files
-        if (!configPath.isEmpty()) {
-            File configFile = new File(configPath);
-            Scanner configReader = new Scanner(configFile);
-
-            if (this.debug)
-                System.out.println("Turing Machine config file: " + configFile);
-            
-            try {
-                this.parseConfig(configReader);
-                if (this.debug)
-                    System.out.println("    Successfully Parsed");
-            } catch (Exception e) {
-                configReader.close();
-                throw e;
-            }
-
-            configReader.close();
-        }
-
-        if (!tapePath.isEmpty()) {
-            File tapeFile = new File(tapePath);
-            Scanner tapeReader = new Scanner(tapeFile);
-
-            if (this.debug)
-                System.out.println("Turing Machine tape file: " + tapePath);
-
-            try {
-                this.parseTape(tapeReader);
-                if (this.debug)
-                    System.out.println("    Successfully Parsed");
-            } catch (Exception e) {
-                tapeReader.close();
-                throw e;
-            }
-
-            tapeReader.close();
-        }
-
-        if (this.debug)
-            System.out.println("Ready to Run\n");
-    }
-}
\ No newline at end of file
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public class TuringMachine {
+
+    public static enum direction {
+        RIGHT, LEFT, STAY
+    }; // direction allowed for the moves
+
+    public static enum engine {
+        TABLE, BLOCK, RLE, JIT
+    }; // execution engines: step by step on the transition tables, by memoized macro steps over blocks of cells,
+       // on a run length encoded tape, or by a class generated for the machine
+
+    private CompiledMachine compiled; // program of the machine: transitions, accepting states and tape offset
+    private MachineRun run; // execution of the program: tape, reading head and current state
+
+    private engine executionEngine; // engine used when display and debug are off
+    private int blockSize; // number of cells in a block for the BLOCK engine, 0 to choose it from the symbols
+    private RunLimits limits; // budgets of the run, enforced by the TABLE and JIT engines, the display, the trace and the profile
+    private String tracePath; // file receiving the trace of the steps, empty for no trace
+    private long traceEvery, traceFrom, traceTo; // steps traced (and displayed): every `traceEvery` in [traceFrom, traceTo)
+    private boolean profile; // count the visits of the states and transitions, see ProfilingEngine
+    private String profilePath; // file receiving the profile in JSON, empty for the report only
+    private ProfilingEngine profiler; // profiler of the last execution, null if it was not profiled
+    private String checkpointPath; // file receiving the checkpoints of the run, empty for no checkpoint
+    private long checkpointEvery; // milliseconds between two checkpoints
+
+    private SymbolMap symbols; // renumbering of the symbols of the optimized machine, null if the tape is not encoded
+
+    private boolean debug, display;
+
+    public int getFinalState() throws TuringMachineException {
+        return this.run.getFinalState();
+    }
+
+    public boolean getAccepted() throws TuringMachineException {
+        return this.run.getAccepted();
+    }
+
+    public long getSteps() throws TuringMachineException {
+        return this.run.getSteps();
+    }
+
+    public MachineRun.termination getTermination() throws TuringMachineException {
+        return this.run.getTermination();
+    }
+
+    public CompiledMachine getCompiled() {
+        return this.compiled;
+    }
+
+    public MachineRun getRun() {
+        return this.run;
+    }
+
+    public void setEngine(engine executionEngine, int blockSize) {
+        this.executionEngine = executionEngine;
+        this.blockSize = blockSize;
+    }
+
+    public void setLimits(RunLimits limits) {
+        // the budgets stop the TABLE and JIT engines (the loops are only detected by the TABLE engine),
+        // a run asking for an engine which can't be stopped is refused instead of running on the tables
+        this.limits = limits;
+    }
+
+    public void setTrace(String tracePath, long every, long from, long to) {
+        // the trace is written in the background by a TraceWriter, see TracingEngine for the sampling
+        this.tracePath = tracePath;
+        this.traceEvery = every;
+        this.traceFrom = from;
+        this.traceTo = to;
+    }
+
+    public void setProfile(boolean profile, String profilePath) {
+        // the run is profiled by the TABLE engine, the report is printed once it is over
+        this.profile = profile || !profilePath.isEmpty();
+        this.profilePath = profilePath;
+    }
+
+    public ProfilingEngine getProfiler() {
+        return this.profiler;
+    }
+
+    public void setCheckpoint(String checkpointPath, long everyMillis) {
+        // the run is saved periodically by a Checkpointer, it uses the TABLE engine like the limits
+        this.checkpointPath = checkpointPath;
+        this.checkpointEvery = everyMillis;
+    }
+
+    public void resume(String checkpointPath) throws IOException, InvalidCheckpointException {
+        // continue a run from a checkpoint of the same machine instead of the tape
+        if (this.debug)
+            System.out.println("Turing Machine checkpoint file: " + checkpointPath);
+
+        this.run.reset();
+        Checkpointer.restore(checkpointPath, this.run);
+        if (this.debug)
+            System.out.println("    Successfully Restored");
+    }
+
+    public void optimize() {
+        // run an equivalent machine without unreachable and duplicated states (see MachineOptimizer)
+        // the symbols are renumbered too when only the final tape is seen, the trace, the profile and the
+        // checkpoints keep the symbols of the file
+        int statesNb = this.compiled.statesNb, size = this.compiled.nextState.length;
+
+        this.compiled = MachineOptimizer.optimize(this.compiled);
+        if (!this.debug && !this.display && this.tracePath.isEmpty() && !this.profile && this.checkpointPath.isEmpty())
+            this.symbols = SymbolMap.of(this.compiled);
+        if (this.symbols != null)
+            this.compiled = this.symbols.getMachine();
+        this.run.replaceMachine(this.compiled);
+
+        if (this.debug) {
+            System.out.println("Turing Machine optimized:");
+            System.out.println("    States: " + statesNb + " -> " + this.compiled.statesNb);
+            System.out.println("    Table entries: " + size + " -> " + this.compiled.nextState.length);
+        }
+    }
+
+    public void execute() {
+        int[] foreign = (this.symbols != null) ? this.symbols.encode(this.run.getTape()) : null;
+
+        this.executeEngine();
+        if (this.symbols != null)
+            this.symbols.decode(this.run.getTape(), foreign);
+    }
+
+    private void executeEngine() {
+        if (this.debug || this.display) {
+            this.run.executeDisplay(this.limits, this.traceEvery, this.traceFrom, this.traceTo);
+            System.out.println("Done\n");
+        } else if (!this.tracePath.isEmpty()) {
+            try {
+                TraceWriter trace = TraceWriter.open(this.tracePath);
+                this.run.execute(this.limits, null, new TracingEngine(this.compiled, trace, this.traceEvery, this.traceFrom, this.traceTo));
+                trace.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (this.profile) {
+            this.profiler = new ProfilingEngine(this.compiled);
+            this.run.execute(this.limits, null, this.profiler);
+            System.out.print(this.profiler.report());
+            if (!this.profilePath.isEmpty()) {
+                try {
+                    this.profiler.writeJson(this.profilePath);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        } else if (!this.checkpointPath.isEmpty()) {
+            try {
+                Checkpointer checkpointer = new Checkpointer(this.checkpointPath, this.checkpointEvery);
+                this.run.execute(this.limits, checkpointer);
+                checkpointer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (!this.limits.isUnlimited()) {
+            // the JIT engine is the only one stopped by the budgets, the loops are detected by the table execution
+            if (this.executionEngine == engine.BLOCK || this.executionEngine == engine.RLE)
+                throw new IllegalArgumentException("The " + this.executionEngine.name().toLowerCase() + " engine can't be stopped by the budgets"
+                                                   + " (-max-steps, -max-cells, -timeout, -detect-loops), use the table or jit engine");
+            if (this.executionEngine == engine.JIT && this.limits.detectsLoops())
+                throw new IllegalArgumentException("The loops are only detected by the table engine, -detect-loops can't be used with the jit engine");
+            if (this.executionEngine == engine.JIT && JitCompiler.isAvailable() && !this.compiled.hasSparseTransitions())
+                this.run.execute(this.limits, null, JitCompiler.compile(this.compiled));
+            else
+                this.run.execute(this.limits);
+        } else if (this.compiled.hasSparseTransitions()) {
+            this.run.execute(); // only the TABLE engine looks up the keys outside the dense tables
+        } else if (this.executionEngine == engine.BLOCK) {
+            this.run.execute(new BlockEngine(this.compiled, this.blockSize));
+        } else if (this.executionEngine == engine.RLE) {
+            this.run.execute(new RunLengthEngine(this.compiled));
+        } else if (this.executionEngine == engine.JIT && JitCompiler.isAvailable()) {
+            this.run.execute(JitCompiler.compile(this.compiled));
+        } else {
+            this.run.execute();
+        }
+    }
+
+    private TuringMachine(boolean display, boolean debug) {
+        this.debug = debug;
+        this.display = display;
+        this.executionEngine = engine.TABLE;
+        this.blockSize = 0;
+        this.limits = RunLimits.NONE;
+        this.tracePath = "";
+        this.traceEvery = 1;
+        this.traceFrom = 0;
+        this.traceTo = Long.MAX_VALUE;
+        this.profile = false;
+        this.profilePath = "";
+        this.checkpointPath = "";
+        this.checkpointEvery = 0;
+        this.symbols = null;
+
+        if (this.debug)
+            System.out.println("Successfully initialized");
+    }
+
+    public TuringMachine(String configPath, String tapePath, boolean display, boolean debug)
+            throws FileNotFoundException, InvalidConfigFileException, InvalidTapeFileException {
+        this(configPath, tapePath, display, debug, "");
+    }
+
+    public TuringMachine(String configPath, String tapePath, boolean display, boolean debug, String cacheDirectory)
+            throws FileNotFoundException, InvalidConfigFileException, InvalidTapeFileException {
+        // initialise the turing machine and configure it from the config file given (text or compiled, see MachineIO)
+        // give empty string if no file (or no cache of the compiled text files) required
+        this(display, debug);
+
+        // Parse the given files
+        if (!configPath.isEmpty())
+            this.compiled = this.loadConfig(configPath, cacheDirectory);
+        else
+            this.compiled = new CompiledMachine(0, new ArrayList<>(), new HashMap<>(), 0); // machine without transitions
+        this.run = new MachineRun(this.compiled);
+
+        this.loadTape(tapePath);
+
+        if (this.debug)
+            System.out.println("Ready to Run\n");
+    }
+
+    public TuringMachine(CompiledMachine machine, String tapePath, boolean display, boolean debug)
+            throws FileNotFoundException, InvalidTapeFileException {
+        // initialise a turing machine running an already compiled machine, which can be shared
+        // between several turing machines, on its own tape
+        this(display, debug);
+
+        this.compiled = machine;
+        this.run = new MachineRun(this.compiled);
+
+        this.loadTape(tapePath);
+
+        if (this.debug)
+            System.out.println("Ready to Run\n");
+    }
+
+    private CompiledMachine loadConfig(String configPath, String cacheDirectory)
+            throws FileNotFoundException, InvalidConfigFileException {
+        CompiledMachine machine;
+
+        if (this.debug)
+            System.out.println("Turing Machine config file: " + configPath);
+
+        machine = MachineIO.load(configPath, cacheDirectory);
+        if (this.debug)
+            System.out.println((MachineIO.isBinary(configPath) || !cacheDirectory.isEmpty()) ? "    Successfully Loaded"
+                                                                                             : "    Successfully Parsed");
+        return machine;
+    }
+
+    private void loadTape(String tapePath) throws FileNotFoundException, InvalidTapeFileException {
+        if (tapePath.isEmpty())
+            return;
+
+        if (this.debug)
+            System.out.println("Turing Machine tape file: " + tapePath);
+
+        this.run.loadTape(tapePath);
+        if (this.debug)
+            System.out.println("    Successfully Parsed");
+    }
+}
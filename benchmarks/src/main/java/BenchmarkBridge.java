@@ -0,0 +1,26 @@
+import bench.EmulatorHarness;
+
+public class BenchmarkBridge implements EmulatorHarness {
+    /* gives the benchmarks (named package) access to the emulator classes (default package) */
+
+    @Override
+    public Object load(String configPath, String tapePath) throws Exception {
+        return new TuringMachine(configPath, tapePath, false, false);
+    }
+
+    @Override
+    public long execute(Object machine) throws Exception {
+        TuringMachine tm = (TuringMachine) machine;
+        tm.execute();
+        return tm.getSteps();
+    }
+
+    @Override
+    public int sweepLeft(int cells) {
+        Tape tape = new Tape();
+        int sum = 0;
+        for (int i = 0; i > -cells; i--)
+            sum += tape.read(i);
+        return sum + tape.getNegativesSize();
+    }
+}
@@ -0,0 +1,28 @@
+package bench;
+
+/**
+ * Entry points of the emulator used by the benchmarks.
+ *
+ * <p>The emulator classes live in the default package, which cannot be imported from a named
+ * package (and JMH refuses benchmarks in the default package), so they are reached through this
+ * interface implemented by {@code BenchmarkBridge}.
+ */
+public interface EmulatorHarness {
+
+    /** Builds a machine from its config and tape files, as {@code Main} does. */
+    Object load(String configPath, String tapePath) throws Exception;
+
+    /** Runs a machine returned by {@link #load} and returns the number of steps it took. */
+    long execute(Object machine) throws Exception;
+
+    /** Reads a fresh tape from cell 0 down to cell -(cells-1), growing the negative half every step. */
+    int sweepLeft(int cells);
+
+    static EmulatorHarness create() {
+        try {
+            return (EmulatorHarness) Class.forName("BenchmarkBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't load the emulator bridge", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state execution throughput. The machine is rebuilt before every invocation (a machine
+ * runs only once) and this setup is not measured; the {@code steps} counter is reported in
+ * steps/second next to the runs/second score.
+ *
+ * <p>Per-invocation setup adds timestamping noise on the tiny baseline workloads, compare them
+ * between releases rather than against the generated ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecuteBenchmark {
+
+    @Param({Workloads.ADD_ONE, Workloads.XK_YK, Workloads.MOT_TRIE, Workloads.BB4, Workloads.BB5,
+            Workloads.LEFT_RUNNER})
+    public String workload;
+
+    private EmulatorHarness harness;
+    private String configPath;
+    private String tapePath;
+    private Object machine;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Steps {
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.steps = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] paths = Workloads.resolve(this.workload);
+        this.harness = EmulatorHarness.create();
+        this.configPath = paths[0];
+        this.tapePath = paths[1];
+    }
+
+    @Setup(Level.Invocation)
+    public void load() throws Exception {
+        this.machine = this.harness.load(this.configPath, this.tapePath);
+    }
+
+    @Benchmark
+    public long execute(Steps counter) throws Exception {
+        long steps = this.harness.execute(this.machine);
+        counter.steps += steps;
+        return steps;
+    }
+}
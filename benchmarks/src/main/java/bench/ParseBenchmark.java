@@ -0,0 +1,45 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of building a machine: config and tape parsing plus the transition table compilation. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({Workloads.ADD_ONE, Workloads.XK_YK, Workloads.MOT_TRIE, Workloads.BB5, Workloads.LEFT_RUNNER})
+    public String workload;
+
+    private EmulatorHarness harness;
+    private String configPath;
+    private String tapePath;
+
+    @Setup
+    public void setup() {
+        String[] paths = Workloads.resolve(this.workload);
+        this.harness = EmulatorHarness.create();
+        this.configPath = paths[0];
+        this.tapePath = paths[1];
+    }
+
+    @Benchmark
+    public Object construct() throws Exception {
+        return this.harness.load(this.configPath, this.tapePath);
+    }
+}
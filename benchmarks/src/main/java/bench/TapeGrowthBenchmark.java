@@ -0,0 +1,44 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Worst case of the tape expansion: a head running left on a fresh tape creates a new negative
+ * cell on every read. See also the {@code left_runner} workload of {@link ExecuteBenchmark} for
+ * the same pattern through a whole machine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TapeGrowthBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int cells;
+
+    private EmulatorHarness harness;
+
+    @Setup
+    public void setup() {
+        this.harness = EmulatorHarness.create();
+    }
+
+    @Benchmark
+    public int sweepLeft() {
+        return this.harness.sweepLeft(this.cells);
+    }
+}
@@ -0,0 +1,112 @@
+package bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Machines and tapes used by the benchmarks.
+ *
+ * <p>The baseline workloads are the examples of {@code tests/}, resolved against the repository
+ * root (system property {@code emulator.root}, {@code ..} by default since the benchmarks are run
+ * from {@code benchmarks/}). The generated workloads are written once to a temporary directory:
+ * <ul>
+ *   <li>{@code bb4}: 4-state busy beaver champion, 107 steps</li>
+ *   <li>{@code bb5}: 5-state busy beaver champion, 47,176,870 steps</li>
+ *   <li>{@code left_runner}: {@value #LEFT_RUNNER_STATES} states walking left on a blank tape,
+ *       one new negative cell per step</li>
+ * </ul>
+ */
+public final class Workloads {
+
+    public static final String ADD_ONE = "addOne";
+    public static final String XK_YK = "xk_yk";
+    public static final String MOT_TRIE = "mot_trie";
+    public static final String BB4 = "bb4";
+    public static final String BB5 = "bb5";
+    public static final String LEFT_RUNNER = "left_runner";
+
+    static final int LEFT_RUNNER_STATES = 5_000;
+
+    private static Path generated;
+
+    private Workloads() {
+    }
+
+    /** Returns the {config, tape} paths of a workload, the tape path is empty when there is none. */
+    public static synchronized String[] resolve(String name) {
+        Path root = Paths.get(System.getProperty("emulator.root", ".."));
+        switch (name) {
+            case ADD_ONE:
+                return paths(root.resolve("tests/addOne/addOne.tm"), root.resolve("tests/addOne/684.tp"));
+            case XK_YK:
+                return paths(root.resolve("tests/xk_yk/xkyk.tm"), root.resolve("tests/xk_yk/accepted.tp"));
+            case MOT_TRIE:
+                return paths(root.resolve("tests/mot_trie/mottrie.tm"), root.resolve("tests/mot_trie/accepted.tp"));
+            case BB4:
+                return paths(generate(BB4, busyBeaver4()), null);
+            case BB5:
+                return paths(generate(BB5, busyBeaver5()), null);
+            case LEFT_RUNNER:
+                return paths(generate(LEFT_RUNNER, leftRunner(LEFT_RUNNER_STATES)), null);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    private static String[] paths(Path config, Path tape) {
+        return new String[] {config.toString(), (tape == null) ? "" : tape.toString()};
+    }
+
+    private static Path generate(String name, String content) {
+        try {
+            if (generated == null)
+                generated = Files.createTempDirectory("tm-bench");
+            Path file = generated.resolve(name + ".tm");
+            if (!Files.exists(file))
+                Files.writeString(file, content);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String machine(int states, int accepting, String... transitions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("state_number:").append(states).append(";\n");
+        sb.append("accepting_states:").append(accepting).append(";\n");
+        sb.append("transitions:\n");
+        for (int i = 0; i < transitions.length; i++)
+            sb.append(transitions[i]).append((i == transitions.length - 1) ? ";\n" : "\n");
+        return sb.toString();
+    }
+
+    static String busyBeaver4() {
+        // A0:1RB A1:1LB B0:1LA B1:0LC C0:1RH C1:1LD D0:1RD D1:0RA, H is the state 4
+        return machine(5, 4,
+                "(0,0):(1,1,RIGHT)", "(0,1):(1,1,LEFT)",
+                "(1,0):(0,1,LEFT)", "(1,1):(2,0,LEFT)",
+                "(2,0):(4,1,RIGHT)", "(2,1):(3,1,LEFT)",
+                "(3,0):(3,1,RIGHT)", "(3,1):(0,0,RIGHT)");
+    }
+
+    static String busyBeaver5() {
+        // A0:1RB A1:1LC B0:1RC B1:1RB C0:1RD C1:0LE D0:1LA D1:1LD E0:1RH E1:0LA, H is the state 5
+        return machine(6, 5,
+                "(0,0):(1,1,RIGHT)", "(0,1):(2,1,LEFT)",
+                "(1,0):(2,1,RIGHT)", "(1,1):(1,1,RIGHT)",
+                "(2,0):(3,1,RIGHT)", "(2,1):(4,0,LEFT)",
+                "(3,0):(0,1,LEFT)", "(3,1):(3,1,LEFT)",
+                "(4,0):(5,1,RIGHT)", "(4,1):(0,0,LEFT)");
+    }
+
+    static String leftRunner(int states) {
+        // state i reads a blank and goes to state i+1 one cell to the left, the last state halts
+        String[] transitions = new String[states - 1];
+        for (int i = 0; i < states - 1; i++)
+            transitions[i] = "(" + i + ",0):(" + (i + 1) + ",0,LEFT)";
+        return machine(states, states - 1, transitions);
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Scanner;
+
+public class CheckpointCheck {
+    /* round trip of the checkpoints (see Checkpointer): a run stopped by a budget then restored and run to the
+       end must end like the run which was never stopped, whatever the record the log ends with
+       run by `make check`, prints the failed checks and exits with 1 if there is one */
+
+    private static final String BB5 = "state_number:6;\naccepting_states:5;\ntransitions:\n"
+            + "(0,0):(1,1,RIGHT)\n(0,1):(2,1,LEFT)\n(1,0):(2,1,RIGHT)\n(1,1):(1,1,RIGHT)\n(2,0):(3,1,RIGHT)\n"
+            + "(2,1):(4,0,LEFT)\n(3,0):(0,1,LEFT)\n(3,1):(3,1,LEFT)\n(4,0):(5,1,RIGHT)\n(4,1):(0,0,LEFT);";
+    private static final String RIGHT_WRITER = "state_number:1;\naccepting_states:0;\ntransitions:\n(0,0):(0,1,RIGHT);";
+
+    private static int failed = 0;
+
+    public static void main(String[] args) throws Exception {
+        CompiledMachine bb5 = CompiledMachine.parse(new Scanner(BB5));
+        CompiledMachine rightWriter = CompiledMachine.parse(new Scanner(RIGHT_WRITER));
+        File file = File.createTempFile("check", Checkpointer.EXTENSION);
+
+        try {
+            MachineRun reference = new MachineRun(bb5);
+            reference.execute();
+
+            // stopped by the step budget, a checkpoint after every chunk so the log is compacted several times
+            MachineRun stopped = new MachineRun(bb5);
+            checkpointed(stopped, new RunLimits(10_000_000, Long.MAX_VALUE, 0, false), file, 0);
+            check("stopped by the step budget", stopped.getTermination() == MachineRun.termination.STEP_LIMIT);
+            check("resumed after the step budget", same(reference, resumed(bb5, file)));
+
+            // stopped by the loop detection in the middle of a chunk: the cells of this chunk must be saved
+            MachineRun loop = new MachineRun(rightWriter);
+            checkpointed(loop, new RunLimits(Long.MAX_VALUE, Long.MAX_VALUE, 0, true), file, 3_600_000);
+            MachineRun restored = new MachineRun(rightWriter);
+            Checkpointer.restore(file.getPath(), restored);
+            check("stopped by the loop detection", loop.getTermination() == MachineRun.termination.LOOP);
+            check("restored after the loop detection", sameConfiguration(loop, restored));
+
+            // a record interrupted while being written is ignored, the previous one gives the configuration
+            checkpointed(new MachineRun(bb5), new RunLimits(10_000_000, Long.MAX_VALUE, 0, false), file, 0);
+            long complete = file.length();
+            checkpointed(new MachineRun(bb5), new RunLimits(10_000_000, Long.MAX_VALUE, 0, false), file, 3_600_000);
+            byte[] log = Files.readAllBytes(file.toPath());
+            try (RandomAccessFile torn = new RandomAccessFile(file, "rw")) {
+                torn.setLength(log.length - 10); // last record cut before its end mark
+            }
+            MachineRun partial = new MachineRun(bb5);
+            Checkpointer.restore(file.getPath(), partial);
+            check("torn record ignored", partial.getCurrentSteps() == 0);
+            check("resumed before the torn record", same(reference, resumed(bb5, file)));
+            try (RandomAccessFile torn = new RandomAccessFile(file, "rw")) {
+                torn.setLength(log.length);
+                torn.seek(log.length);
+                torn.write(log, 16, 20); // start of another record
+            }
+            check("resumed before the partial record", same(reference, resumed(bb5, file)));
+            check("compacted log", complete < 2L * 4 * (12_000 + 4096) + (1 << 20));
+
+            // a checkpoint of another machine is refused
+            try {
+                Checkpointer.restore(file.getPath(), new MachineRun(rightWriter));
+                check("checkpoint of another machine refused", false);
+            } catch (InvalidCheckpointException e) {
+                check("checkpoint of another machine refused", true);
+            }
+        } finally {
+            file.delete();
+        }
+
+        if (failed > 0) {
+            System.out.println(failed + " checkpoint check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("Checkpoints: OK");
+    }
+
+    private static void checkpointed(MachineRun run, RunLimits limits, File file, long intervalMillis) throws IOException {
+        Checkpointer checkpointer = new Checkpointer(file.getPath(), intervalMillis);
+        try {
+            run.execute(limits, checkpointer);
+        } finally {
+            checkpointer.close();
+        }
+    }
+
+    private static MachineRun resumed(CompiledMachine machine, File file) throws Exception {
+        MachineRun run = new MachineRun(machine);
+        Checkpointer.restore(file.getPath(), run);
+        run.execute();
+        return run;
+    }
+
+    private static boolean same(MachineRun expected, MachineRun run) throws TuringMachineException {
+        return expected.getTermination() == run.getTermination() && expected.getFinalState() == run.getFinalState()
+                && expected.getSteps() == run.getSteps() && sameConfiguration(expected, run);
+    }
+
+    private static boolean sameConfiguration(MachineRun expected, MachineRun run) {
+        Tape a = expected.getTape(), b = run.getTape();
+        int from = -Math.max(a.getNegativesSize(), b.getNegativesSize());
+        int to = Math.max(a.getPositivesSize(), b.getPositivesSize());
+
+        if (expected.getCurrentState() != run.getCurrentState() || expected.getCurrentIndex() != run.getCurrentIndex()
+                || expected.getCurrentSteps() != run.getCurrentSteps())
+            return false;
+        for (int index = from; index < to; index++)
+            if (a.peek(index) != b.peek(index))
+                return false;
+        return true;
+    }
+
+    private static void check(String name, boolean passed) {
+        if (!passed) {
+            System.out.println("FAILED: " + name);
+            failed++;
+        }
+    }
+}
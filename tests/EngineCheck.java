@@ -0,0 +1,146 @@
+import java.io.File;
+import java.util.Random;
+import java.util.Scanner;
+
+public class EngineCheck {
+    /* equivalence of the engines (see TuringMachine.engine): every engine must end a run like the table
+       execution, with the same termination, final state, steps, head position and tape
+       the machines of tests/ are run on their tapes, then random machines on random tapes: small ones which
+       halt, and large ones spreading their transitions over many states or many symbols
+       the engines stopped by the budgets of the RunLimits (JIT) are also compared to the table execution under
+       a step budget falling in the middle of a chunk, and under the exact number of steps of a halting run
+       run by `make check`, prints the failed checks and exits with 1 if there is one */
+
+    private static final long SEED = 20260611;
+    private static final int RANDOM_MACHINES = 300;
+    private static final long MAX_STEPS = 200_000; // steps after which a random machine is not run to its end
+    private static final int JIT_EVERY = 5; // random machines run by the JIT engine, the kinds of machines alternate
+    private static final long BUDGET = 3 * MachineRun.CHUNK_STEPS / 2 + 1; // budget of steps of the chunked runs
+
+    private static final String[] MOVES = {"RIGHT", "LEFT", "RIGHT", "LEFT", "STAY"};
+
+    private static int failed = 0;
+
+    private interface Engine {
+        void execute(MachineRun run, CompiledMachine machine);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(SEED);
+        int runs = 0;
+
+        // the example machines on their tapes
+        for (File directory : new File("tests").listFiles(File::isDirectory)) {
+            for (File file : directory.listFiles((d, name) -> name.endsWith(".tm"))) {
+                CompiledMachine machine;
+                try {
+                    machine = CompiledMachine.load(file.getPath());
+                } catch (Exception e) {
+                    continue; // the examples of invalid machines
+                }
+                runs += compare(file.getPath() + " (blank tape)", machine, null, JitCompiler.isAvailable());
+                for (File tape : directory.listFiles((d, name) -> name.endsWith(".tp"))) {
+                    MachineRun run = new MachineRun(machine);
+                    run.loadTape(tape.getPath());
+                    int[] cells = new int[run.getTape().getPositivesSize()];
+                    run.getTape().getCells(0, cells, 0, cells.length);
+                    runs += compare(file.getPath() + " " + tape.getName(), machine, cells, JitCompiler.isAvailable());
+                }
+            }
+        }
+
+        // random machines: small ones halting, many states, many symbols
+        for (int i = 0; i < RANDOM_MACHINES; i++) {
+            int statesNb = (i % 3 == 1) ? 40 + random.nextInt(80) : 2 + random.nextInt(5);
+            int symbolsNb = (i % 3 == 2) ? 150 + random.nextInt(150) : 2 + random.nextInt(3);
+            String text = machine(random, statesNb, symbolsNb);
+            CompiledMachine machine = CompiledMachine.parse(new Scanner(text));
+            int[] cells = new int[random.nextInt(20)];
+            for (int c = 0; c < cells.length; c++)
+                cells[c] = random.nextInt(symbolsNb);
+            runs += compare("random machine " + i + ":\n" + text, machine, cells, JitCompiler.isAvailable() && i % JIT_EVERY == 0);
+        }
+
+        if (failed > 0) {
+            System.out.println(failed + " engine check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("Engines: OK (" + runs + " runs)");
+    }
+
+    private static int compare(String name, CompiledMachine machine, int[] cells, boolean jit) throws TuringMachineException {
+        // compare every engine to the table execution, return the number of runs compared
+        // jit is false to skip the JIT engine, a compilation costs more than the runs of a small machine
+        MachineRun reference = run(machine, cells, (run, m) -> run.execute(new RunLimits(MAX_STEPS, Long.MAX_VALUE, 0, false)));
+        int runs = 0;
+
+        // the engines running to the end are only compared on the machines which halt
+        if (reference.getTermination() != MachineRun.termination.STEP_LIMIT) {
+            reference = run(machine, cells, (run, m) -> run.execute());
+            runs += check(name + " block", reference, run(machine, cells, (run, m) -> run.execute(new BlockEngine(m, 0))));
+            runs += check(name + " rle", reference, run(machine, cells, (run, m) -> run.execute(new RunLengthEngine(m))));
+            if (jit)
+                runs += check(name + " jit", reference, run(machine, cells, (run, m) -> run.execute(JitCompiler.compile(m))));
+        }
+
+        // the chunked engines under budgets, the run halting at its last allowed step must halt
+        if (jit) {
+            long[] budgets = {BUDGET, reference.getSteps()};
+            for (long budget : budgets) {
+                RunLimits limits = new RunLimits(budget, Long.MAX_VALUE, 0, false);
+                runs += check(name + " jit with " + budget + " steps", run(machine, cells, (run, m) -> run.execute(limits)),
+                              run(machine, cells, (run, m) -> run.execute(limits, null, JitCompiler.compile(m))));
+            }
+        }
+        return runs;
+    }
+
+    private static MachineRun run(CompiledMachine machine, int[] cells, Engine engine) {
+        // run the machine from the cells (blank tape if null), the head on the first cell
+        MachineRun run = new MachineRun(machine);
+        if (cells != null && cells.length > 0) {
+            run.getTape().extend(0, cells.length);
+            run.getTape().setCells(0, cells, 0, cells.length);
+        }
+        engine.execute(run, machine);
+        return run;
+    }
+
+    private static int check(String name, MachineRun expected, MachineRun run) throws TuringMachineException {
+        if (!same(expected, run)) {
+            System.out.println("FAILED: " + name);
+            failed++;
+        }
+        return 1;
+    }
+
+    private static boolean same(MachineRun expected, MachineRun run) throws TuringMachineException {
+        Tape a = expected.getTape(), b = run.getTape();
+        int from = -Math.max(a.getNegativesSize(), b.getNegativesSize());
+        int to = Math.max(a.getPositivesSize(), b.getPositivesSize());
+
+        if (expected.getTermination() != run.getTermination() || expected.getFinalState() != run.getFinalState()
+                || expected.getSteps() != run.getSteps() || expected.getCurrentIndex() != run.getCurrentIndex())
+            return false;
+        for (int index = from; index < to; index++)
+            if (a.peek(index) != b.peek(index))
+                return false;
+        return true;
+    }
+
+    private static String machine(Random random, int statesNb, int symbolsNb) {
+        // random machine in the text format, a few (state, symbol) couples have no transition so it can halt
+        StringBuilder text = new StringBuilder();
+        text.append("state_number:").append(statesNb).append(";\naccepting_states:").append(statesNb - 1).append(";\ntransitions:");
+        for (int state = 0; state < statesNb - 1; state++) {
+            for (int read = 0; read < symbolsNb; read++) {
+                if (random.nextInt(8) == 0)
+                    continue;
+                text.append("\n(").append(state).append(",").append(read).append("):(")
+                    .append(random.nextInt(statesNb)).append(",").append(random.nextInt(symbolsNb)).append(",")
+                    .append(MOVES[random.nextInt(MOVES.length)]).append(")");
+            }
+        }
+        return text.append(";").toString();
+    }
+}
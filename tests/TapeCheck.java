@@ -0,0 +1,89 @@
+import java.io.File;
+
+public class TapeCheck {
+    /* round trip of the tape files (see TapeIO): a tape saved then loaded must hold the same cells at the same
+       indexes, in the text format from index 0 and in the binary format from its first cell
+       a text dump of a tape written left of index 0 must be refused, the text format can't give its first index
+       run by `make check`, prints the failed checks and exits with 1 if there is one */
+
+    private static final int[] CELLS = {3, -7, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, 0, 12};
+
+    private static int failed = 0;
+
+    public static void main(String[] args) throws Exception {
+        File text = File.createTempFile("check", ".tp");
+        File binary = File.createTempFile("check", TapeIO.BINARY_EXTENSION);
+
+        try {
+            // cells from index 0: exact in both formats
+            Tape positives = tape(0);
+            check("text round trip", same(positives, saved(text, positives)));
+            check("binary round trip", same(positives, saved(binary, positives)));
+
+            // blank cells left of index 0 are dropped by the text format, the configuration is the same
+            Tape blanks = tape(0);
+            blanks.extend(5, blanks.getPositivesSize());
+            check("text round trip with blank cells left of 0", same(blanks, saved(text, blanks)));
+
+            // cells left of index 0: the binary format keeps the index of the first cell
+            Tape negatives = tape(-3);
+            Tape loaded = saved(binary, negatives);
+            check("binary round trip from index -3", same(negatives, loaded) && loaded.getNegativesSize() == 3);
+
+            // the text format would load them from index 0, the dump is refused and no file is written
+            text.delete();
+            try {
+                TapeIO.save(text.getPath(), negatives);
+                check("text dump from index -3 refused", false);
+            } catch (InvalidTapeFileException e) {
+                check("text dump from index -3 refused", !text.exists());
+            }
+        } finally {
+            text.delete();
+            binary.delete();
+        }
+
+        if (failed > 0) {
+            System.out.println(failed + " tape check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("Tapes: OK");
+    }
+
+    private static Tape tape(int first) {
+        // the cells written from the index first
+        Tape tape = new Tape();
+        tape.extend(Math.max(0, -first), Math.max(0, first + CELLS.length));
+        tape.setCells(first, CELLS, 0, CELLS.length);
+        return tape;
+    }
+
+    private static Tape saved(File file, Tape tape) throws Exception {
+        Tape loaded = new Tape();
+        TapeIO.save(file.getPath(), tape);
+        TapeIO.load(file.getPath(), loaded);
+        return loaded;
+    }
+
+    private static boolean same(Tape expected, Tape tape) {
+        int from = -Math.max(expected.getNegativesSize(), tape.getNegativesSize());
+        int to = Math.max(expected.getPositivesSize(), tape.getPositivesSize());
+
+        for (int index = from; index < to; index++)
+            if (cell(expected, index) != cell(tape, index))
+                return false;
+        return true;
+    }
+
+    private static int cell(Tape tape, int index) {
+        // a cell outside the tape is blank
+        return (index < -tape.getNegativesSize() || index >= tape.getPositivesSize()) ? 0 : tape.read(index);
+    }
+
+    private static void check(String name, boolean passed) {
+        if (!passed) {
+            System.out.println("FAILED: " + name);
+            failed++;
+        }
+    }
+}
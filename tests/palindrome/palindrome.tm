@@ -0,0 +1,17 @@
+tapes_number:2;
+state_number:4;
+accepting_states:3;
+transitions:
+(0,1,0):(0,1,1,RIGHT,RIGHT)
+(0,2,0):(0,2,2,RIGHT,RIGHT)
+(0,0,0):(1,0,0,LEFT,LEFT)
+(1,1,1):(1,1,1,LEFT,STAY)
+(1,1,2):(1,1,2,LEFT,STAY)
+(1,2,1):(1,2,1,LEFT,STAY)
+(1,2,2):(1,2,2,LEFT,STAY)
+(1,0,1):(2,0,1,RIGHT,STAY)
+(1,0,2):(2,0,2,RIGHT,STAY)
+(1,0,0):(3,0,0,STAY,STAY)
+(2,1,1):(2,1,1,RIGHT,LEFT)
+(2,2,2):(2,2,2,RIGHT,LEFT)
+(2,0,0):(3,0,0,STAY,STAY);